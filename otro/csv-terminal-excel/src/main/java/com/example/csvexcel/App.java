@@ -1,9 +1,18 @@
 package com.example.csvexcel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 import org.jline.utils.InfoCmp;
+import org.jline.utils.NonBlockingReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import java.util.Scanner;
 
@@ -11,10 +20,129 @@ public class App {
 
     public static void main(String[] args) throws Exception { // <-- throws Exception
 
+        // --batch: sin terminal, procesa filas de un archivo o stdin hacia stdout
+        if (Arrays.asList(args).contains("--batch")) {
+            System.exit(BatchMode.run(args));
+        }
+
+        // Opciones: --lazy abre el archivo sin cargar todas las filas
+        // (también se usa si el CSV ya tiene un índice guardado);
+        // --follow agrega las filas que se van escribiendo al final del archivo
+        // (la hoja se carga en memoria aunque se pida --lazy o --zero-copy);
+        // --zero-copy mapea el archivo y decodifica cada celda solo al mostrarla;
+        // --quote-all guarda con comillas en todos los campos (formato anterior);
+        // --preview abre solo una muestra (primeras filas y filas al azar),
+        // rápido aunque el archivo sea enorme; no se puede guardar;
+        // --cols nombre,edad,C carga solo esas columnas (por nombre del
+        // encabezado o letra) y --where 'I>30' solo las filas que cumplen la
+        // condición (se prueba al leer, antes de crear la fila); en los dos
+        // casos la hoja no tiene todo el archivo y no se puede guardar.
+        // Con varios archivos (o un patrón como 'data-*.csv') se abren juntos
+        // en una sola hoja y se guarda en merged.csv junto al primero.
+        // Sin opciones el archivo se carga en segundo plano (BackgroundLoader):
+        // se puede recorrer mientras se lee el resto.
+        // Con un solo archivo cada cambio se anota en archivo.csv.journal
+        // (ver EditJournal) y se recupera si el programa se cerró sin guardar.
+        // --export destino convierte el archivo (con --cols y --where, solo
+        // esa parte) y sale sin abrir la hoja; el formato sale de la
+        // extensión del destino: .csvx, .gz o CSV.
+        List<String> filenames = new ArrayList<>();
+        boolean lazy = false;
+        boolean follow = false;
+        boolean zeroCopy = false;
+        boolean quoteAll = false;
+        boolean preview = false;
+        String colsSpec = null;
+        String whereSpec = null;
+        String exportTarget = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--lazy")) lazy = true;
+            else if (arg.equals("--follow")) follow = true;
+            else if (arg.equals("--zero-copy")) zeroCopy = true;
+            else if (arg.equals("--quote-all")) quoteAll = true;
+            else if (arg.equals("--preview")) preview = true;
+            else if (arg.equals("--cols") && i + 1 < args.length) colsSpec = args[++i];
+            else if (arg.startsWith("--cols=")) colsSpec = arg.substring("--cols=".length());
+            else if (arg.equals("--where") && i + 1 < args.length) whereSpec = args[++i];
+            else if (arg.startsWith("--where=")) whereSpec = arg.substring("--where=".length());
+            else if (arg.equals("--export") && i + 1 < args.length) exportTarget = args[++i];
+            else if (arg.startsWith("--export=")) exportTarget = arg.substring("--export=".length());
+            else filenames.add(arg);
+        }
+        String filename = filenames.isEmpty() ? null : filenames.get(0);
+        boolean multi = filenames.size() > 1 || CsvReader.isGlob(filename);
+
+        RowSelection selection = null;
+        if (colsSpec != null || whereSpec != null) {
+            if (multi || CsvxFormat.isCsvx(Paths.get(filename))) {
+                System.out.println("❌ --cols y --where solo funcionan con un archivo CSV; se abre entero");
+            } else {
+                try {
+                    selection = CsvReader.resolveSelection(filename, colsSpec, whereSpec);
+                } catch (IOException e) {
+                    System.out.println("❌ " + e.getMessage());
+                    return;
+                }
+                if (lazy || zeroCopy) System.out.println("❌ --cols y --where no funcionan con --lazy ni --zero-copy; se ignoran");
+                lazy = false;
+                zeroCopy = false;
+                if (preview && whereSpec != null) System.out.println("❌ --where no funciona con --preview; se ignora");
+            }
+        }
+
+        if (!multi && !lazy && selection == null && CsvReader.hasValidIndex(filename)) lazy = true;
+
+        LoadProgress progress = (filas, porSegundo) ->
+                System.out.printf("\rCargando: %d filas (%.0f filas/s)", filas, porSegundo);
+        if (exportTarget != null) {
+            export(filenames, multi, selection, quoteAll, exportTarget, progress);
+            return;
+        }
+        boolean followed = false;
+        if (follow) {
+            if (multi) {
+                System.out.println("❌ --follow solo funciona con un archivo");
+            } else if (preview || selection != null) {
+                System.out.println("❌ --follow no funciona con --preview, --cols ni --where");
+            } else if (ParallelGzip.isGzip(Paths.get(filename)) || CsvxFormat.isCsvx(Paths.get(filename))) {
+                System.out.println("❌ --follow solo funciona con CSV de texto");
+            } else {
+                followed = true;
+            }
+        }
 
-        Sheet sheet = CsvReader.readCsv(args[0]);
+        BackgroundLoader loader = null;
+        PreviewSampler sampler = null;
+        FileFollower follower = null;
+        Sheet sheet;
+        if (multi) sheet = CsvReader.readMany(filenames, progress);
+        // --follow lee hasta el último registro completo y sigue desde ahí
+        else if (followed) {
+            follower = FileFollower.open(Paths.get(filename), progress);
+            sheet = follower.getSheet();
+        }
+        else if (preview && !CsvxFormat.isCsvx(Paths.get(filename))) {
+            sampler = PreviewSampler.open(Paths.get(filename), selection == null ? null : selection.getColumns());
+            sheet = sampler.getSheet();
+        }
+        else if (zeroCopy) sheet = CsvReader.openZeroCopy(filename, progress);
+        else if (lazy) sheet = CsvReader.openLazy(filename, progress);
+        else if (!BackgroundLoader.canLoad(Paths.get(filename))) sheet = CsvReader.readCsv(filename, selection, progress);
+        else {
+            sheet = new Sheet();
+            loader = new BackgroundLoader(sheet, Paths.get(filename), selection);
+        }
+        System.out.println();
+        if (quoteAll) sheet.setDialect(sheet.getDialect().withQuoteAll(true));
+        // nunca se reemplaza uno de los archivos con la unión de todos
+        String saveTarget = multi ? sheet.getSourceFiles().get(0).resolveSibling("merged.csv").toString() : filename;
         //Sheet sheet = CsvReader.readCsv("sheet.csv");
 
+        String statusMsg = null;
+        boolean useJournal = !multi && follower == null && sampler == null && selection == null;
+        EditJournal journal = null;
+
         Terminal terminal = TerminalBuilder.builder()
                 .system(true)
                 .jna(true)
@@ -33,9 +161,33 @@ public class App {
 
         int prevKey = -1; // fuera del while principal, para detectar combinaciones
         Map<Character, int[]> marks = new HashMap<>();
+
+        // Guardado en segundo plano sobre el archivo abierto
+        BackgroundSaver saver = new BackgroundSaver(sheet);
                             
         while (true) {
 
+            // Filas que llegaron desde la carga en segundo plano
+            if (loader != null && loader.isLoading()) {
+                loader.poll();
+                if (!loader.isLoading()) statusMsg = loader.getMessage();
+            }
+
+            // El diario se aplica sobre la hoja completa (al terminar la carga)
+            if (useJournal && journal == null && (loader == null || loader.isComplete())) {
+                try {
+                    journal = EditJournal.open(sheet, Paths.get(filename));
+                    if (journal.getReplayed() > 0) {
+                        statusMsg = "Se recuperaron " + journal.getReplayed() + " cambios sin guardar ("
+                                + EditJournal.pathFor(Paths.get(filename)).getFileName() + ")";
+                    }
+                } catch (IOException e) {
+                    // sin diario se puede seguir editando, solo se pierde la recuperación
+                    useJournal = false;
+                    statusMsg = "❌ No se pudo abrir el diario (se sigue sin diario): " + e.getMessage();
+                }
+            }
+
             // Limpiar pantalla
             terminal.puts(InfoCmp.Capability.clear_screen);
             terminal.flush();
@@ -58,6 +210,12 @@ public class App {
                 colWidths[j - leftCol] = maxWidth + 2; // pequeño margen para separar columnas
             }
 
+            // Columnas vacías: se calcula una vez por pantalla, no por celda
+            boolean[] colsVacias = new boolean[colWidths.length];
+            for (int j = leftCol; j < Math.min(leftCol + viewWidth, sheet.getColCount()); j++) {
+                colsVacias[j - leftCol] = sheet.isColumnEmpty(j);
+            }
+
             // 2. Imprimir filas con colores y ancho fijo
             for (int i = topRow; i < Math.min(topRow + viewHeight, sheet.getRowCount()); i++) {
 
@@ -74,7 +232,7 @@ public class App {
                     String bgLight = "\033[47m";
                     String bgYellow = "\033[43m";
 
-                    boolean colVacia = sheet.isColumnEmpty(j);
+                    boolean colVacia = colsVacias[j - leftCol];
                     Character markLabel = null;
                     for (Map.Entry<Character, int[]> entry : marks.entrySet()) {
                         int[] pos = entry.getValue();
@@ -124,12 +282,49 @@ public class App {
 
             String color = (visibles < totales) ? colorVerde : colorGris;
 
-            System.out.println(color + "Filas visibles: " + visibles + " / " + totales + colorReset);
+            System.out.println(color + "Filas visibles: " + visibles + " / " + totales + colorReset
+                    + colorGris + "   Memoria: " + memoryStatus() + colorReset);
+            if (multi) System.out.println(colorGris + "Archivo: " + sheet.getSourceFile(curRow) + colorReset);
+            if (sampler != null) System.out.println("\033[33m" + sampler.getMessage() + colorReset);
+            if (loader != null && loader.isLoading()) {
+                System.out.println(colorVerde + loader.getMessage() + colorReset);
+            } else if (saver.isSaving()) {
+                System.out.println(colorVerde + "Guardando... " + saver.percent() + "%" + colorReset);
+            } else if (statusMsg != null) {
+                System.out.println(statusMsg);
+            }
             //===============================================================================================================
 
-            System.out.println("\nTeclas: h/j/k/l=Mover | e=Editar | s=Guardar | c/C=Agregar Columna | d=Eliminar Columna | f=Filtrar | r=Restaurar | q=Salir");
-
-                key = terminal.reader().read();
+            System.out.println("\nTeclas: h/j/k/l=Mover | e=Editar | s=Guardar | c/C=Agregar Columna | d=Eliminar Columna | f=Filtrar" + (multi ? " | F=Filtrar por archivo" : "") + " | r=Restaurar | q=Salir");
+
+                // Mientras se carga o se guarda se redibuja cada tanto para mostrar el avance
+                if (saver.isSaving() || (loader != null && loader.isLoading())) key = terminal.reader().read(200);
+                else if (follower != null) {
+                    // Siguiendo un archivo se buscan filas nuevas mientras se espera
+                    // la tecla; solo se redibuja si llegó alguna
+                    int nuevas;
+                    do {
+                        key = terminal.reader().read(500);
+                        // si el cursor está en la última fila la vista baja con las nuevas
+                        boolean alFinal = curRow >= sheet.getRowCount() - 1;
+                        nuevas = follower.poll();
+                        if (nuevas > 0 && alFinal) curRow = Math.max(0, sheet.getRowCount() - 1);
+                    } while (key == NonBlockingReader.READ_EXPIRED && nuevas == 0);
+                }
+                else key = terminal.reader().read();
+                String saved = saver.poll();
+                if (saved != null) statusMsg = saved;
+                if (journal != null) {
+                    String journalError = journal.takeError();
+                    if (journalError != null) statusMsg = journalError;
+                    // Si el diario creció mucho se pasan los cambios al CSV
+                    // (solo si se guarda la hoja entera sobre el archivo)
+                    if (!saver.isSaving() && journal.size() > EditJournal.COMPACT_BYTES
+                            && sheet.savesOverSource(Paths.get(filename)) && saver.start(Paths.get(filename))) {
+                        statusMsg = "Compactando el diario...";
+                    }
+                }
+                if (key == NonBlockingReader.READ_EXPIRED) continue;
 
                     // ----- Manejo de marcas tipo Vim -----
                     if (key == 'm') {
@@ -166,6 +361,13 @@ public class App {
                 continue;
             }
 
+            // Mientras se carga (o si la carga no terminó) solo se puede recorrer la hoja
+            if (loader != null && !loader.isComplete() && "esCcydfF".indexOf(key) >= 0) {
+                statusMsg = loader.isLoading() ? "Espere a que termine la carga (q cancela)" : loader.getMessage();
+                prevKey = key;
+                continue;
+            }
+
             switch (key) {
                 case 'h': curCol = Math.max(0, curCol - 1); break;
                 case 'l': curCol = Math.min(sheet.getColCount() - 1, curCol + 1); break;
@@ -210,9 +412,15 @@ public class App {
                     terminal.flush();
                     break;
                 case 's':
-                    CsvReader.writeCsv(sheet, "sheet.csv");
-                    terminal.writer().println("Guardado! Presiona Enter...");
-                    terminal.writer().flush();
+                    // reemplazar el archivo que otro proceso sigue escribiendo perdería sus filas
+                    if (follower != null) statusMsg = "No se puede guardar un archivo en seguimiento (--follow)";
+                    // guardar la muestra reemplazaría el archivo con unas pocas filas
+                    else if (sampler != null) statusMsg = "No se puede guardar una vista previa (--preview)";
+                    // faltarían las columnas o filas que no se cargaron
+                    else if (selection != null) statusMsg = "No se puede guardar con --cols o --where (falta parte del archivo)";
+                    // guardar la vista filtrada sobre el origen borraría las filas ocultas
+                    else if (sheet.isFiltered() && sheet.isSource(Paths.get(saveTarget))) statusMsg = "No se puede guardar con un filtro activo (quitalo con 'r')";
+                    else if (!saver.start(Paths.get(saveTarget))) statusMsg = "Ya hay un guardado en curso";
                     break;
 
                 case 'C': // agregar columna al final
@@ -265,6 +473,30 @@ public class App {
                     terminal.writer().flush();
                     terminal.reader().read();
                     break;
+                case 'F': // filtrar por archivo de origen (hoja con varios archivos)
+                    if (!multi) break;
+                    terminal.writer().print("Filtrar por archivo (ej: ==data-2026-10-01.csv): ");
+                    terminal.writer().flush();
+
+                    StringBuilder sourceInput = new StringBuilder();
+                    while (true) {
+                        key = terminal.reader().read();
+                        if (key == 10 || key == 13) break;
+                        if (key == 127 && sourceInput.length() > 0) {
+                            sourceInput.deleteCharAt(sourceInput.length() - 1);
+                            terminal.writer().print("\b \b");
+                        } else if (key >= 32 && key <= 126) {
+                            sourceInput.append((char) key);
+                            terminal.writer().print((char) key);
+                        }
+                        terminal.flush();
+                    }
+                    terminal.writer().println();
+                    terminal.flush();
+
+                    if (!sheet.filterBySource(sourceInput.toString())) statusMsg = "❌ Condición inválida: " + sourceInput;
+                    curRow = 0;
+                    break;
                 case 'r': // restaurar filtro
                     sheet.clearFilter();
                     curRow = 0;
@@ -273,10 +505,50 @@ public class App {
                     Thread.sleep(300);
                     break;
                 case 'q':
+                    if (loader != null && loader.isLoading()) loader.cancel();
+                    if (saver.isSaving()) {
+                        terminal.writer().println("Esperando a que termine el guardado...");
+                        terminal.flush();
+                        String result = saver.await();
+                        if (result != null) terminal.writer().println(result);
+                    }
+                    try {
+                        if (journal != null) journal.close();
+                    } catch (IOException e) {
+                        terminal.writer().println("❌ Error al escribir el diario: " + e.getMessage());
+                    }
                     terminal.close();
                     return;
             }
             prevKey = key;
         }
     }
+
+    // --export: lee el archivo entero (o la parte de --cols y --where) y lo
+    // escribe en el formato del destino
+    private static void export(List<String> filenames, boolean multi, RowSelection selection, boolean quoteAll,
+                               String target, LoadProgress progress) throws Exception {
+        Path out = Paths.get(target);
+        for (String name : filenames) {
+            if (!CsvReader.isGlob(name) && Files.exists(out) && Files.isSameFile(Paths.get(name), out)) {
+                System.out.println("❌ --export necesita un archivo distinto del de origen");
+                return;
+            }
+        }
+        Sheet sheet = multi ? CsvReader.readMany(filenames, progress) : CsvReader.readCsv(filenames.get(0), selection, progress);
+        System.out.println();
+        if (quoteAll) sheet.setDialect(sheet.getDialect().withQuoteAll(true));
+        LoadProgress saving = (filas, porSegundo) ->
+                System.out.printf("\rExportando: %d filas (%.0f filas/s)", filas, porSegundo);
+        CsvSaver.write(sheet, out, saving);
+        System.out.println();
+        System.out.println("Exportado a " + out + " (" + sheet.getRowCount() + " filas)");
+    }
+
+    // Memoria en uso dentro del heap y fuera (columnas en OffHeapColumn)
+    private static String memoryStatus() {
+        Runtime rt = Runtime.getRuntime();
+        long heap = rt.totalMemory() - rt.freeMemory();
+        return (heap >> 20) + " MB heap + " + (OffHeapColumn.directBytes() >> 20) + " MB fuera del heap";
+    }
 }
@@ -0,0 +1,285 @@
+package com.example.csvexcel;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+// Carga un CSV en un hilo aparte y entrega las filas por tandas, para que la
+// interfaz pueda mostrar la primera pantalla sin esperar al resto del
+// archivo. Las tandas se agregan a la hoja desde el hilo de la interfaz
+// llamando a poll(); al terminar se hace lo mismo que al final de readCsv.
+//
+// Igual que readCsv, los archivos grandes se parsean por bloques en
+// paralelo (ParallelCsvParser) anotando dónde empieza cada fila, así se
+// puede guardar de forma incremental. Lo que recorre columnas enteras se
+// hace en el hilo de la carga y la interfaz solo reemplaza las columnas ya
+// armadas: la forma de cada columna al llegar a SETTLE_ROWS y OFF_HEAP_ROWS
+// filas (Sheet.settleColumns) y, con todas las filas, su tipo.
+public class BackgroundLoader {
+
+    // La primera tanda es chica (alcanza para una pantalla); después van más grandes
+    private static final int FIRST_BATCH = 256;
+    private static final int BATCH_ROWS = 16 * 1024;
+    // En paralelo cada bloque es una tanda: más chicos que en readCsv para
+    // que la primera pantalla aparezca antes y cada poll() tarde poco
+    private static final int CHUNK_BYTES = 4 << 20;
+
+    private final Sheet sheet;
+    private final Path path;
+    private final RowSelection selection;
+    private final long size; // bytes del archivo (0 si está comprimido)
+    private final ConcurrentLinkedQueue<List<String[]>> batches = new ConcurrentLinkedQueue<>();
+    private final long start = System.nanoTime();
+
+    private volatile long bytesRead = 0;
+    private volatile long rowsRead = 0;
+    private volatile long skipped = 0; // descartados por --where
+    private long skippedAdded = 0;
+    private volatile boolean finished = false;
+    private volatile boolean cancelled = false;
+    private volatile Exception error = null;
+    private volatile LongBuffer offsets = null; // inicio de cada fila (carga en paralelo)
+    // la interfaz pasó todas las filas a la hoja: se pueden inferir los tipos
+    private final CountDownLatch rowsAdded = new CountDownLatch(1);
+    private volatile Sheet.InferredTypes inferred = null;
+    // la interfaz llegó a SETTLE_ROWS u OFF_HEAP_ROWS filas en la hoja
+    private final Semaphore atSettlePoint = new Semaphore(0);
+    private volatile Column[] settled = null; // columnas que la interfaz todavía no reemplazó
+    private long appended = 0; // filas que poll() pasó a la hoja
+    private volatile boolean typed = false;
+    private boolean rowsFinished = false;
+    private boolean complete = false;
+    private boolean failed = false;
+
+    // Empieza a leer; el formato se detecta acá mismo para que la hoja
+    // lo tenga antes de la primera fila
+    // 'selection': solo esas columnas y filas (null = todo)
+    public BackgroundLoader(Sheet sheet, Path path, RowSelection selection) throws IOException {
+        this.sheet = sheet;
+        this.path = path;
+        this.selection = selection;
+        boolean gzip = ParallelGzip.isGzip(path);
+        this.size = gzip ? 0 : Files.size(path);
+        Read read;
+        if (size >= CsvReader.PARALLEL_THRESHOLD) {
+            Dialect dialect = Dialect.sniff(path);
+            sheet.setDialect(dialect);
+            read = () -> readParallel(dialect);
+        } else {
+            InputStream in = gzip ? ParallelGzip.open(path) : new Counting(Files.newInputStream(path));
+            CsvStreamReader reader = new CsvStreamReader(in, selection);
+            sheet.setDialect(reader.getDialect());
+            read = () -> read(reader);
+        }
+
+        Thread thread = new Thread(() -> run(read), "carga");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Los .csvx tienen su propio formato y se abren con readCsv
+    public static boolean canLoad(Path path) throws IOException {
+        return !CsvxFormat.isCsvx(path);
+    }
+
+    private interface Read {
+        void run() throws Exception;
+    }
+
+    private void run(Read read) {
+        try {
+            read.run();
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            finished = true;
+        }
+        if (error == null) inferTypes();
+    }
+
+    private void read(CsvStreamReader reader) throws Exception {
+        try (reader) {
+            List<String[]> batch = new ArrayList<>(FIRST_BATCH);
+            int limit = FIRST_BATCH;
+            boolean eof = false;
+            while (!cancelled) {
+                String[] row = reader.readNext();
+                if (row == null) {
+                    eof = true;
+                    break;
+                }
+                batch.add(row);
+                if (batch.size() >= limit) {
+                    skipped = reader.getSkipped();
+                    publish(batch);
+                    batch = new ArrayList<>(BATCH_ROWS);
+                    limit = BATCH_ROWS;
+                }
+            }
+            skipped = reader.getSkipped();
+            publish(batch);
+            if (!eof) throw new IOException("carga cancelada");
+        }
+    }
+
+    // Cada bloque parseado es una tanda
+    private void readParallel(Dialect dialect) throws IOException {
+        offsets = ParallelCsvParser.parseChunks(path, dialect, CHUNK_BYTES, selection,
+                (rows, skippedRows, end) -> {
+                    if (cancelled) throw new IOException("carga cancelada");
+                    skipped += skippedRows; // solo escribe este hilo
+                    publish(rows);
+                    bytesRead = end;
+                });
+    }
+
+    // Espera a que poll() haya pasado todas las filas a la hoja; mientras
+    // tanto la hoja no cambia (no se puede editar durante la carga) y la
+    // interfaz solo la lee
+    private void inferTypes() {
+        try {
+            rowsAdded.await();
+            inferred = sheet.inferTypes();
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            typed = true;
+        }
+    }
+
+    // Corta la tanda en SETTLE_ROWS y OFF_HEAP_ROWS filas para armar ahí las
+    // columnas antes de seguir
+    private void publish(List<String[]> batch) {
+        for (long point : new long[] {Sheet.SETTLE_ROWS, Sheet.OFF_HEAP_ROWS}) {
+            long cut = point - rowsRead;
+            if (cut <= 0 || cut > batch.size()) continue;
+            add(batch.subList(0, (int) cut));
+            settle();
+            batch = batch.subList((int) cut, batch.size());
+        }
+        add(batch);
+    }
+
+    private void add(List<String[]> batch) {
+        if (batch.isEmpty()) return;
+        batches.add(batch);
+        rowsRead += batch.size();
+    }
+
+    // Espera a que poll() haya pasado las filas a la hoja (mientras tanto
+    // no llegan más, así que solo se lee) y deja las columnas para que poll()
+    // las reemplace antes de la próxima tanda
+    private void settle() {
+        atSettlePoint.acquireUninterruptibly();
+        settled = sheet.settleColumns();
+    }
+
+    // Agrega a la hoja las filas que ya se leyeron y devuelve cuántas fueron.
+    // Cuando se leyó todo cierra la carga (ver getMessage)
+    public int poll() {
+        if (complete || failed) return 0;
+        boolean done = finished; // antes de vaciar: así no queda ninguna tanda atrás
+        int added = 0;
+        List<String[]> batch;
+        while ((batch = batches.poll()) != null) {
+            applySettled();
+            for (String[] row : batch) sheet.addLoadedRow(row);
+            added += batch.size();
+            appended += batch.size();
+            if (Sheet.isSettlePoint(appended)) atSettlePoint.release();
+        }
+        applySettled();
+        long skippedNow = skipped;
+        sheet.addSkippedRows(skippedNow - skippedAdded);
+        skippedAdded = skippedNow;
+        if (done && !rowsFinished) {
+            sheet.finishRows();
+            rowsFinished = true;
+            if (error != null) failed = true;
+            else rowsAdded.countDown();
+        }
+        if (rowsFinished && typed && !failed) {
+            if (error != null) {
+                failed = true;
+            } else {
+                sheet.applyTypes(inferred);
+                LongBuffer index = offsets;
+                if (selection == null) sheet.setSource(path, index == null ? null : new RowIndex(index, sheet.getColCount()));
+                complete = true;
+            }
+        }
+        return added;
+    }
+
+    // El hilo de la carga deja las columnas antes de la tanda siguiente y
+    // antes de terminar, así que llegan antes que esas filas
+    private void applySettled() {
+        Column[] columns = settled;
+        if (columns == null) return;
+        settled = null;
+        sheet.applySettled(columns);
+    }
+
+    // Todavía hay filas por leer o por pasar a la hoja
+    public boolean isLoading() {
+        return !complete && !failed;
+    }
+
+    // La hoja tiene el archivo entero; si la carga falló o se canceló queda
+    // incompleta y no se debe guardar sobre el original
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Estado para mostrar en la interfaz
+    public String getMessage() {
+        if (failed) {
+            return "❌ Error al cargar: " + error.getMessage() + " (hoja incompleta, no se puede modificar)";
+        }
+        long rows = rowsRead;
+        long scanned = rows + skipped; // con --where se leen más registros que los que se cargan
+        String of = scanned > rows ? " de " + scanned : "";
+        if (complete) return "Cargadas " + rows + " filas" + of;
+        if (rowsFinished) return "Analizando columnas... " + rows + " filas" + of;
+        String text = "Cargando... " + rows + " filas" + of + " ("
+                + String.format("%.0f", CsvReader.rowsPerSecond(scanned, start)) + " filas/s)";
+        if (size > 0) text += " " + Math.min(100, bytesRead * 100 / size) + "%";
+        return text;
+    }
+
+    // Deja de leer (por ejemplo al salir mientras se carga); si ya se leyó
+    // todo no cambia nada
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Cuenta los bytes leídos del archivo para mostrar el porcentaje
+    private class Counting extends FilterInputStream {
+
+        Counting(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) bytesRead++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) bytesRead += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.csvexcel;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Guarda la hoja en un hilo aparte sobre una copia consistente, para que la
+// interfaz siga respondiendo. El resultado se aplica a la hoja desde el hilo
+// de la interfaz llamando a poll().
+public class BackgroundSaver {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "guardado");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Sheet sheet;
+    private Sheet snapshot;
+    private Path target;
+    private boolean overSource;
+    private Future<RowIndex> pending;
+    private volatile long rowsWritten;
+    private long totalRows;
+
+    public BackgroundSaver(Sheet sheet) {
+        this.sheet = sheet;
+    }
+
+    public boolean isSaving() {
+        return pending != null;
+    }
+
+    // Empieza a guardar; devuelve false si ya hay un guardado en curso
+    public boolean start(Path target) {
+        if (pending != null) return false;
+        this.target = target;
+        snapshot = sheet.snapshot();
+        overSource = sheet.savesOverSource(target);
+        if (overSource) sheet.clearChanges();
+        totalRows = snapshot.getRowCount();
+        rowsWritten = 0;
+        Sheet copy = snapshot;
+        pending = executor.submit(() -> CsvSaver.write(copy, target, (rows, rate) -> rowsWritten = rows));
+        return true;
+    }
+
+    public int percent() {
+        return totalRows == 0 ? 100 : (int) Math.min(100, rowsWritten * 100 / totalRows);
+    }
+
+    // Si el guardado terminó aplica el resultado y devuelve un mensaje;
+    // si sigue en curso (o no hay ninguno) devuelve null
+    public String poll() {
+        if (pending == null || !pending.isDone()) return null;
+        try {
+            RowIndex written = pending.get();
+            if (overSource) sheet.markSaved(written);
+            return "Guardado en " + target;
+        } catch (ExecutionException e) {
+            if (overSource) sheet.restoreChanges(snapshot);
+            return "❌ Error al guardar: " + e.getCause().getMessage();
+        } catch (Exception e) {
+            if (overSource) sheet.restoreChanges(snapshot);
+            return "❌ Error al guardar: " + e.getMessage();
+        } finally {
+            snapshot.release();
+            pending = null;
+            snapshot = null;
+        }
+    }
+
+    // Espera a que termine el guardado en curso (por ejemplo antes de salir)
+    public String await() {
+        if (pending == null) return null;
+        try {
+            pending.get();
+        } catch (Exception e) {
+            // el error se informa en poll()
+        }
+        return poll();
+    }
+}
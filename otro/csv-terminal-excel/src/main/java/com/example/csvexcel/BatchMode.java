@@ -0,0 +1,191 @@
+package com.example.csvexcel;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Modo sin terminal para scripts y cron: lee filas de un archivo (o de stdin)
+// y las escribe en stdout una por una, sin cargar la hoja en memoria.
+//
+//   --batch [archivo|-] --filter 'C>30' --formula 'E==C*2' --cols A,C,E
+//
+// Los filtros usan las mismas condiciones que la tecla f (Condition) y las
+// fórmulas el mismo evaluador que la hoja (Expression), con referencias a
+// columnas de la misma fila. Filtros y fórmulas se aplican en el orden en
+// que se escriben; --cols elige las columnas de salida. La primera fila se
+// toma como encabezado y pasa sin filtrar (salvo con --no-header).
+// La salida es CSV en UTF-8 con comillas solo donde hacen falta
+// (--quote-all las pone en todos los campos).
+public class BatchMode {
+
+    // Un paso del procesamiento: filtro o fórmula
+    private interface Step {
+        // Devuelve la fila (quizá modificada) o null si queda descartada
+        String[] apply(String[] row);
+    }
+
+    public static int run(String[] args) {
+        String filename = null;
+        boolean header = true;
+        List<Step> steps = new ArrayList<>();
+        int[] cols = null;
+        boolean quoteAll = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--batch":
+                        break;
+                    case "--no-header":
+                        header = false;
+                        break;
+                    case "--quote-all":
+                        quoteAll = true;
+                        break;
+                    case "--filter":
+                        steps.add(filterStep(value(args, ++i, arg)));
+                        break;
+                    case "--formula":
+                        steps.add(formulaStep(value(args, ++i, arg)));
+                        break;
+                    case "--cols":
+                        cols = parseColumns(value(args, ++i, arg));
+                        break;
+                    default:
+                        if (arg.startsWith("--")) throw new IllegalArgumentException("Opción desconocida: " + arg);
+                        filename = arg;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            return 2;
+        }
+
+        OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+        CsvEncoder encoder = new CsvEncoder(Dialect.DEFAULT.withQuoteAll(quoteAll));
+        try (CsvStreamReader reader = new CsvStreamReader(openInput(filename))) {
+            String[] row;
+            boolean first = header;
+            while ((row = reader.readNext()) != null) {
+                if (first) {
+                    first = false;
+                } else {
+                    row = applyAll(steps, row);
+                    if (row == null) continue;
+                }
+                encoder.encode(project(row, cols));
+                if (encoder.size() >= 1 << 16) {
+                    encoder.writeTo(out);
+                    encoder.reset();
+                }
+            }
+            encoder.writeTo(out);
+            out.flush();
+            return System.out.checkError() ? 1 : 0;
+        } catch (IOException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Falta el valor de " + option);
+        return args[i];
+    }
+
+    private static InputStream openInput(String filename) throws IOException {
+        if (filename == null || filename.equals("-")) return System.in;
+        Path path = Paths.get(filename);
+        if (ParallelGzip.isGzip(path)) return ParallelGzip.open(path);
+        return new FileInputStream(filename);
+    }
+
+    private static String[] applyAll(List<Step> steps, String[] row) {
+        for (Step step : steps) {
+            row = step.apply(row);
+            if (row == null) return null;
+        }
+        return row;
+    }
+
+    // 'C>30' -> columna C, condición >30
+    private static Step filterStep(String spec) {
+        int n = letters(spec);
+        Condition cond = n == 0 ? null : Condition.parse(columnIndex(spec.substring(0, n)), spec.substring(n));
+        if (cond == null) throw new IllegalArgumentException("Filtro inválido: " + spec);
+        return row -> cond.matches(row) ? row : null;
+    }
+
+    // 'E==C*2' -> en la columna E el resultado de =C*2 (como en una celda)
+    private static Step formulaStep(String spec) {
+        int n = letters(spec);
+        if (n == 0 || n >= spec.length() || spec.charAt(n) != '=') {
+            throw new IllegalArgumentException("Fórmula inválida: " + spec);
+        }
+        int target = columnIndex(spec.substring(0, n));
+        Expression expr;
+        try {
+            expr = Expression.compile(spec.substring(n + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Fórmula inválida: " + spec);
+        }
+        return row -> {
+            String result;
+            try {
+                result = String.valueOf(expr.eval(row));
+            } catch (RuntimeException e) {
+                result = "#ERR";
+            }
+            if (target >= row.length) {
+                int old = row.length;
+                row = Arrays.copyOf(row, target + 1);
+                Arrays.fill(row, old, row.length, "");
+            }
+            row[target] = result;
+            return row;
+        };
+    }
+
+    // 'A,C,E'
+    private static int[] parseColumns(String spec) {
+        String[] parts = spec.split(",");
+        int[] cols = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String p = parts[i].trim();
+            if (p.isEmpty() || letters(p) != p.length()) throw new IllegalArgumentException("Columna inválida: " + p);
+            cols[i] = columnIndex(p);
+        }
+        return cols;
+    }
+
+    private static String[] project(String[] row, int[] cols) {
+        if (cols == null) return row;
+        String[] out = new String[cols.length];
+        for (int i = 0; i < cols.length; i++) out[i] = cols[i] < row.length ? row[cols[i]] : "";
+        return out;
+    }
+
+    // Cantidad de letras mayúsculas al principio
+    static int letters(String s) {
+        int n = 0;
+        while (n < s.length() && s.charAt(n) >= 'A' && s.charAt(n) <= 'Z') n++;
+        return n;
+    }
+
+    // A -> 0, Z -> 25, AA -> 26 (como en la hoja)
+    static int columnIndex(String col) {
+        int index = 0;
+        for (int i = 0; i < col.length(); i++) {
+            index = index * 26 + (col.charAt(i) - 'A' + 1);
+        }
+        return index - 1;
+    }
+}
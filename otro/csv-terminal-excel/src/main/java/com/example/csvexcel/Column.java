@@ -0,0 +1,20 @@
+package com.example.csvexcel;
+
+// Valores de una columna de un ColumnStore, por número de fila.
+// Una columna puede estar en más de un lugar a la vez (una copia para
+// guardar, una columna duplicada): 'shares' cuenta los lugares de más y
+// quien la quiera modificar mientras sea mayor que 0 primero la copia (ver
+// ColumnStore.writable). Cuando la copia para guardar ya no se usa los
+// devuelve (ColumnStore.release) y la columna vuelve a escribirse en el lugar.
+public abstract class Column {
+
+    int shares = 0;
+
+    // Valor de la celda (null si nunca se escribió)
+    public abstract String get(int row);
+
+    public abstract void set(int row, String value);
+
+    // Copia no compartida con los mismos valores
+    public abstract Column copy();
+}
@@ -0,0 +1,142 @@
+package com.example.csvexcel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Filas de una hoja en memoria guardadas por columnas: una lista de Column,
+// cada una con el valor de todas las filas. Agregar, borrar o duplicar una
+// columna cambia solo esa lista (no se copia ninguna fila) y recorrer una
+// columna (filtros, fórmulas, tipos) lee un solo arreglo.
+//
+// Para el resto del código sigue siendo una lista de filas: get arma el
+// arreglo de la fila y set lo reparte entre las columnas. Las celdas que
+// nunca se escribieron se leen como "".
+public class ColumnStore extends AbstractList<String[]> implements RandomAccess {
+
+    private final List<Column> columns;
+    private int size = 0;
+
+    public ColumnStore() {
+        this(new ArrayList<>(), 0);
+    }
+
+    private ColumnStore(List<Column> columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    // Copia para guardar en segundo plano: comparte las columnas; la primera
+    // escritura en cada una (de cualquiera de los dos lados) la copia
+    public ColumnStore snapshot() {
+        for (Column c : columns) c.shares++;
+        return new ColumnStore(new ArrayList<>(columns), size);
+    }
+
+    // La copia de snapshot() ya no se usa (el guardado terminó): sus
+    // columnas dejan de estar compartidas con ella. Desde el hilo que edita
+    public void release() {
+        for (Column c : columns) {
+            if (c.shares > 0) c.shares--;
+        }
+        columns.clear();
+    }
+
+    public int getColCount() { return columns.size(); }
+
+    Column column(int col) { return columns.get(col); }
+
+    // Cambia cómo se guarda una columna (por ejemplo a NumericColumn al
+    // inferir los tipos); 'column' tiene que tener los mismos valores
+    void replaceColumn(int col, Column column) {
+        columns.set(col, column);
+    }
+
+    // Una celda (null si la columna no existe)
+    public String cell(int row, int col) {
+        if (col < 0 || col >= columns.size()) return null;
+        String v = columns.get(col).get(row);
+        return v == null ? "" : v;
+    }
+
+    public void setCell(int row, int col, String value) {
+        ensureColCount(col + 1);
+        write(col, row, value);
+    }
+
+    // Agrega columnas vacías hasta tener 'cols'
+    public void ensureColCount(int cols) {
+        while (columns.size() < cols) columns.add(new TextColumn());
+    }
+
+    public void insertColumn(int index, Column column) {
+        columns.add(index, column);
+    }
+
+    public void removeColumn(int index) {
+        columns.remove(index);
+    }
+
+    // La copia comparte los valores hasta que se modifique una de las dos
+    public void duplicateColumn(int index) {
+        Column c = columns.get(index);
+        c.shares++;
+        columns.add(index + 1, c);
+    }
+
+    private Column writable(int col) {
+        Column c = columns.get(col);
+        if (c.shares > 0) {
+            c.shares--; // este lugar deja de usarla
+            c = c.copy();
+            columns.set(col, c);
+        }
+        return c;
+    }
+
+    // Una DictColumn que llegó al máximo de valores distintos pasa a texto
+    private void write(int col, int row, String value) {
+        Column c = writable(col);
+        if (c instanceof DictColumn && !((DictColumn) c).accepts(value)) {
+            c = ((DictColumn) c).toText();
+            columns.set(col, c);
+        }
+        c.set(row, value);
+    }
+
+    @Override
+    public String[] get(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Fila " + row);
+        String[] values = new String[columns.size()];
+        for (int c = 0; c < values.length; c++) values[c] = cell(row, c);
+        return values;
+    }
+
+    @Override
+    public String[] set(int row, String[] value) {
+        String[] old = get(row);
+        ensureColCount(value.length);
+        for (int c = 0; c < columns.size(); c++) {
+            String v = c < value.length ? value[c] : null;
+            if (v != null || columns.get(c).get(row) != null) write(c, row, v);
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int row, String[] value) {
+        if (row != size) throw new UnsupportedOperationException("Solo se puede agregar al final");
+        ensureColCount(value.length);
+        for (int c = 0; c < value.length; c++) {
+            if (value[c] != null) write(c, row, value[c]);
+        }
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.csvexcel;
+
+import java.util.List;
+
+// Tipo de dato de una columna, inferido a partir de sus valores
+public enum ColumnType {
+    INTEGER, DECIMAL, TEXT;
+
+    // Tipo de un valor suelto (las celdas vacías no cuentan)
+    public static ColumnType of(String value) {
+        if (value == null || value.isEmpty()) return null;
+        if (value.matches("-?\\d{1,18}")) return INTEGER;
+        if (value.matches("-?\\d+(\\.\\d+)?")) return DECIMAL;
+        return TEXT;
+    }
+
+    // Tipo común entre el actual y el de un nuevo valor (INTEGER < DECIMAL < TEXT)
+    public ColumnType widen(ColumnType other) {
+        if (other == null) return this;
+        return values()[Math.max(ordinal(), other.ordinal())];
+    }
+
+    // Infiere el tipo de cada columna a partir de una muestra de filas,
+    // sin contar la primera si es encabezado
+    public static ColumnType[] infer(List<String[]> sample, int cols, boolean header) {
+        ColumnType[] types = new ColumnType[cols];
+        for (int r = header ? 1 : 0; r < sample.size(); r++) {
+            String[] row = sample.get(r);
+            for (int c = 0; c < cols && c < row.length; c++) {
+                ColumnType t = of(row[c]);
+                types[c] = types[c] == null ? t : types[c].widen(t);
+            }
+        }
+        for (int c = 0; c < cols; c++) {
+            if (types[c] == null) types[c] = TEXT;
+        }
+        return types;
+    }
+}
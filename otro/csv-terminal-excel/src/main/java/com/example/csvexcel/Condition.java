@@ -0,0 +1,141 @@
+package com.example.csvexcel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Condición de filtro sobre una columna, como la escribe el usuario:
+// >30, <=5.5, ==Peru, !=Lima. Si el valor es un número se compara como
+// número (las celdas que no lo son no cumplen); si es texto solo valen
+// == y != sin distinguir mayúsculas.
+public class Condition {
+
+    private final int column;
+    private final String operator;
+    private final String valueStr;
+    private final boolean isNumeric;
+    private final double valueNum;
+    private final byte[] valueAscii; // el texto en bytes si es todo ASCII (si no, null)
+
+    private Condition(int column, String operator, String valueStr) {
+        this.column = column;
+        this.operator = operator;
+        this.valueStr = valueStr;
+        this.isNumeric = valueStr.matches("-?\\d+(\\.\\d+)?");
+        this.valueNum = isNumeric ? Double.parseDouble(valueStr) : 0;
+        this.valueAscii = valueStr.chars().allMatch(c -> c < 0x80) ? valueStr.getBytes(StandardCharsets.US_ASCII) : null;
+    }
+
+    // Devuelve null si la condición no empieza con un operador válido
+    public static Condition parse(int column, String condition) {
+        String operator;
+        if (condition.startsWith(">=")) operator = ">=";
+        else if (condition.startsWith("<=")) operator = "<=";
+        else if (condition.startsWith(">")) operator = ">";
+        else if (condition.startsWith("<")) operator = "<";
+        else if (condition.startsWith("==")) operator = "==";
+        else if (condition.startsWith("!=")) operator = "!=";
+        else return null;
+        return new Condition(column, operator, condition.replaceAll("^[><=!]+", "").trim());
+    }
+
+    public int getColumn() { return column; }
+
+    // La misma condición sobre otra columna (cuando se insertan o borran columnas)
+    public Condition withColumn(int newColumn) {
+        return new Condition(newColumn, operator, valueStr);
+    }
+
+    // Compara con un número (el valor ya parseado de la celda)
+    public boolean isNumeric() { return isNumeric; }
+
+    // Valor ya parseado de una celda numérica; NaN (vacía) no cumple, igual
+    // que una celda que no se puede parsear
+    public boolean testNumber(double cellVal) {
+        if (Double.isNaN(cellVal)) return false;
+        return switch (operator) {
+            case ">" -> cellVal > valueNum;
+            case "<" -> cellVal < valueNum;
+            case ">=" -> cellVal >= valueNum;
+            case "<=" -> cellVal <= valueNum;
+            case "==" -> cellVal == valueNum;
+            case "!=" -> cellVal != valueNum;
+            default -> false;
+        };
+    }
+
+    public boolean matches(String[] row) {
+        if (column >= row.length) return false;
+        return test(row[column]);
+    }
+
+    // Prueba la celda sobre sus bytes (buf[start, end), sin comillas) sin
+    // crear el String: 1 cumple, 0 no cumple, -1 no se puede decidir así
+    // (hay que usar test con el texto). Da lo mismo que test en todos los
+    // casos que decide.
+    public int testBytes(ByteBuffer buf, int start, int end) {
+        if (isNumeric) {
+            if (start == end) return 0; // vacía: parseDouble("") falla
+            double v = plainNumber(buf, start, end);
+            if (Double.isNaN(v)) return -1;
+            return testNumber(v) ? 1 : 0;
+        }
+        if (!operator.equals("==") && !operator.equals("!=")) return 0;
+        if (valueAscii == null) return -1;
+        boolean equal = end - start == valueAscii.length;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b < 0) return -1; // no ASCII: equalsIgnoreCase tiene sus propias reglas
+            if (equal && lower(b) != lower(valueAscii[i - start])) equal = false;
+        }
+        return equal == operator.equals("==") ? 1 : 0;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+    }
+
+    // Número con la forma -123 o 123.45 y hasta 15 dígitos: cabe exacto en un
+    // long y dividir por una potencia de 10 redondea igual que parseDouble.
+    // Cualquier otra forma devuelve NaN
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private static double plainNumber(ByteBuffer buf, int start, int end) {
+        int i = start;
+        boolean negative = buf.get(i) == '-';
+        if (negative) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                if (++digits > 15) return Double.NaN;
+                mantissa = mantissa * 10 + (b - '0');
+                if (decimals >= 0) decimals++;
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || decimals == 0) return Double.NaN; // "-", ".", "5."
+        double v = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+        return negative ? -v : v;
+    }
+
+    public boolean test(String cell) {
+        if (isNumeric) {
+            try {
+                return testNumber(Double.parseDouble(cell));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return switch (operator) {
+            case "==" -> cell.equalsIgnoreCase(valueStr);
+            case "!=" -> !cell.equalsIgnoreCase(valueStr);
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.csvexcel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Parser de registros CSV directamente sobre bytes (UTF-8 o Latin-1).
+// Primero ubica los campos del registro (inicio/fin) y recién después,
+// si hace falta, los convierte a String.
+public class CsvByteParser {
+
+    private static final byte NL = '\n';
+    private static final byte CR = '\r';
+
+    private final byte delimiter;
+    private final byte quote;
+    private final Charset charset;
+
+    // Posiciones de los campos del último registro escaneado
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private int fieldCount = 0;
+    private boolean terminated = false;
+    private byte[] scratch = new byte[256];
+
+    public CsvByteParser() {
+        this((byte) ',', (byte) '"');
+    }
+
+    public CsvByteParser(byte delimiter, byte quote) {
+        this(delimiter, quote, StandardCharsets.UTF_8);
+    }
+
+    public CsvByteParser(byte delimiter, byte quote, Charset charset) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.charset = charset;
+    }
+
+    // Parser para el formato detectado de un archivo
+    public CsvByteParser(Dialect dialect) {
+        this((byte) dialect.getDelimiter(), (byte) dialect.getQuote(), dialect.getCharset());
+    }
+
+    // Escanea un registro que empieza en pos (sin pasar de limit).
+    // Devuelve la posición donde empieza el siguiente registro.
+    public int scan(ByteBuffer buf, int pos, int limit) {
+        fieldCount = 0;
+        terminated = false;
+        while (true) {
+            if (fieldCount == starts.length) grow();
+            int i = fieldCount++;
+            escaped[i] = false;
+
+            if (pos < limit && buf.get(pos) == quote) {
+                // campo entre comillas: puede tener separadores y saltos de línea
+                pos++;
+                starts[i] = pos;
+                while (pos < limit) {
+                    byte b = buf.get(pos);
+                    if (b == quote) {
+                        if (pos + 1 < limit && buf.get(pos + 1) == quote) {
+                            escaped[i] = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    pos++;
+                }
+                ends[i] = pos;
+                if (pos < limit) pos++; // comilla de cierre
+                // ignora lo que quede hasta el separador o fin de línea
+                while (pos < limit) {
+                    byte b = buf.get(pos);
+                    if (b == delimiter || b == NL || b == CR) break;
+                    pos++;
+                }
+            } else {
+                starts[i] = pos;
+                while (pos < limit) {
+                    byte b = buf.get(pos);
+                    if (b == delimiter || b == NL || b == CR) break;
+                    pos++;
+                }
+                ends[i] = pos;
+            }
+
+            if (pos >= limit) return limit;
+            byte b = buf.get(pos);
+            if (b == delimiter) {
+                pos++;
+                continue;
+            }
+            // fin de registro: \n, \r\n o \r
+            terminated = true;
+            pos++;
+            if (b == CR && pos < limit && buf.get(pos) == NL) pos++;
+            return pos;
+        }
+    }
+
+    public int getFieldCount() { return fieldCount; }
+
+    // Límites del campo i del último registro (sin las comillas que lo rodean)
+    public int fieldStart(int i) { return starts[i]; }
+
+    public int fieldEnd(int i) { return ends[i]; }
+
+    // El campo tiene comillas duplicadas ("") que hay que quitar al decodificar
+    public boolean isEscaped(int i) { return escaped[i]; }
+
+    // El último registro terminó en un salto de línea (y no en 'limit'):
+    // sirve para saber si un archivo que sigue creciendo lo tiene completo
+    public boolean isTerminated() { return terminated; }
+
+    // Convierte el campo i del último registro escaneado a String
+    public String field(ByteBuffer buf, int i) {
+        int len = ends[i] - starts[i];
+        if (len == 0) return "";
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(starts[i], scratch, 0, len);
+        if (!escaped[i]) return new String(scratch, 0, len, charset);
+
+        // quita las comillas dobles escapadas ("" -> ")
+        int out = 0;
+        for (int k = 0; k < len; k++) {
+            scratch[out++] = scratch[k];
+            if (scratch[k] == quote && k + 1 < len && scratch[k + 1] == quote) k++;
+        }
+        return new String(scratch, 0, out, charset);
+    }
+
+    // Convierte todo el último registro escaneado en una fila
+    public String[] toRow(ByteBuffer buf) {
+        String[] row = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) row[i] = field(buf, i);
+        return row;
+    }
+
+    // La condición sobre el último registro escaneado: compara los bytes del
+    // campo y solo crea el String si con los bytes no alcanza
+    public boolean matches(ByteBuffer buf, Condition cond) {
+        int i = cond.getColumn();
+        // un registro corto se carga con el campo vacío: se prueba "" igual
+        // que al filtrar la hoja (filterByColumn)
+        if (i >= fieldCount) return cond.test("");
+        if (!escaped[i]) {
+            int result = cond.testBytes(buf, starts[i], ends[i]);
+            if (result >= 0) return result == 1;
+        }
+        return cond.test(field(buf, i));
+    }
+
+    // Solo los campos 'cols' (en ese orden); los demás se escanearon pero no
+    // se convierten a String. Si el registro no llega a un campo queda vacío
+    public String[] toRow(ByteBuffer buf, int[] cols) {
+        if (cols == null) return toRow(buf);
+        String[] row = new String[cols.length];
+        for (int k = 0; k < cols.length; k++) row[k] = cols[k] < fieldCount ? field(buf, cols[k]) : "";
+        return row;
+    }
+
+    private void grow() {
+        int n = starts.length * 2;
+        int[] s = new int[n];
+        int[] e = new int[n];
+        boolean[] q = new boolean[n];
+        System.arraycopy(starts, 0, s, 0, fieldCount);
+        System.arraycopy(ends, 0, e, 0, fieldCount);
+        System.arraycopy(escaped, 0, q, 0, fieldCount);
+        starts = s;
+        ends = e;
+        escaped = q;
+    }
+}
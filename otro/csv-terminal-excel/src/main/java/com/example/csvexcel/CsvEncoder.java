@@ -0,0 +1,134 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Codifica filas CSV directamente a bytes en un búfer que se reutiliza.
+// Solo pone comillas en los campos que las necesitan (tienen el separador,
+// comillas o saltos de línea), salvo que el formato pida comillas en todos
+// (Dialect.isQuoteAll, como escribía CSVWriter). En UTF-8 los caracteres
+// se codifican a mano, sin pasar por un Writer. Cada fila termina con el
+// salto de línea del formato (Dialect.getLineEnd).
+public class CsvEncoder {
+
+    private final byte delimiter;
+    private final byte quote;
+    private final char delimiterChar;
+    private final char quoteChar;
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean quoteAll;
+    private final byte[] lineEnd;
+
+    private byte[] buf = new byte[64 * 1024];
+    private int size = 0;
+
+    public CsvEncoder(Dialect dialect) {
+        this.delimiterChar = dialect.getDelimiter();
+        this.quoteChar = dialect.getQuote();
+        this.delimiter = (byte) delimiterChar;
+        this.quote = (byte) quoteChar;
+        this.charset = dialect.getCharset();
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.quoteAll = dialect.isQuoteAll();
+        this.lineEnd = dialect.getLineEnd().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Agrega una fila (con su salto de línea) y devuelve los bytes que ocupó
+    public int encode(String[] row) {
+        int before = size;
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) put(delimiter);
+            String field = row[i] == null ? "" : row[i];
+            if (quoteAll || needsQuotes(field)) {
+                put(quote);
+                putText(field, true);
+                put(quote);
+            } else {
+                putText(field, false);
+            }
+        }
+        raw(lineEnd);
+        return size - before;
+    }
+
+    // Agrega bytes sin codificar (por ejemplo el BOM)
+    public void raw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    public int size() { return size; }
+
+    // Lo codificado hasta ahora (comparte el arreglo: válido hasta el próximo reset)
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(buf, 0, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    private boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == delimiterChar || c == quoteChar || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    // Dentro de comillas, las comillas del texto se duplican
+    private void putText(String s, boolean quoted) {
+        if (!utf8) {
+            byte[] bytes = s.getBytes(charset);
+            ensure(bytes.length * 2);
+            for (byte b : bytes) {
+                buf[size++] = b;
+                if (quoted && b == quote) buf[size++] = b;
+            }
+            return;
+        }
+        ensure(s.length() * 4);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[size++] = (byte) c;
+                if (quoted && c == quoteChar) buf[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[size++] = (byte) (0xF0 | (cp >> 18));
+                buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[size++] = '?'; // surrogate suelto, igual que String.getBytes
+            } else {
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[size++] = b;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+    }
+}
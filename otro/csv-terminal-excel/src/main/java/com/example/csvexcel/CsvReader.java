@@ -1,40 +1,379 @@
 package com.example.csvexcel;
 
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
-
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
 public class CsvReader {
 
+    // Cada cuántas filas se informa el avance de la carga
+    private static final int PROGRESS_EVERY = 100_000;
+
+    // A partir de este tamaño se usa el parser mapeado en memoria y en paralelo
+    static final long PARALLEL_THRESHOLD = 64L << 20; // 64 MB
+
     public static Sheet readCsv(String filename) throws Exception {
+        return readCsv(filename, null);
+    }
+
+    // Carga en streaming: cada registro se parsea una sola vez y va directo a la hoja,
+    // sin guardar antes todas las filas en memoria (readAll).
+    // El separador, las comillas y la codificación se detectan con Dialect.
+    public static Sheet readCsv(String filename, LoadProgress progress) throws Exception {
+        Path path = Paths.get(filename);
+        if (CsvxFormat.isCsvx(path)) return openCsvx(path, progress);
+        boolean gzip = ParallelGzip.isGzip(path);
+        if (!gzip && Files.size(path) >= PARALLEL_THRESHOLD) {
+            return ParallelCsvParser.parse(path, Dialect.sniff(path), progress);
+        }
+
+        // Los .csv.gz se descomprimen en otros hilos mientras se parsea.
+        // Se lee con CsvByteParser, como los archivos grandes y la carga en
+        // segundo plano: RFC 4180 sin carácter de escape ("\\" y "\"" dentro
+        // de comillas son texto) y el \r\n dentro de comillas queda igual
         Sheet sheet = new Sheet();
-        try (CSVReader reader = new CSVReader(new FileReader(filename))) {
-            List<String[]> allRows = reader.readAll();
-            int maxCols = allRows.stream().mapToInt(arr -> arr.length).max().orElse(0);
-
-            for (String[] row : allRows) {
-                if (row.length < maxCols) {
-                    // normaliza filas cortas
-                    String[] newRow = new String[maxCols];
-                    System.arraycopy(row, 0, newRow, 0, row.length);
-                    for (int i = row.length; i < maxCols; i++) newRow[i] = "";
-                    sheet.addRow(newRow);
-                } else {
-                    sheet.addRow(row);
+        long start = System.nanoTime();
+        long count = stream(sheet, path, gzip, progress, start);
+        // normaliza filas cortas una sola vez, al final
+        sheet.finishLoad();
+        sheet.setSource(path, null);
+        if (progress != null) progress.update(count, rowsPerSecond(count, start));
+        return sheet;
+    }
+
+    // Agrega a la hoja cada registro del archivo tal como se lee
+    private static long stream(Sheet sheet, Path path, boolean gzip, LoadProgress progress, long start) throws IOException {
+        long count = 0;
+        try (CsvStreamReader reader = new CsvStreamReader(gzip ? ParallelGzip.open(path) : Files.newInputStream(path))) {
+            sheet.setDialect(reader.getDialect());
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                sheet.appendRow(row);
+                count++;
+                if (progress != null && count % PROGRESS_EVERY == 0) {
+                    progress.update(count, rowsPerSecond(count, start));
                 }
             }
         }
+        return count;
+    }
+
+    // Solo las columnas y filas de 'selection' (ver resolveSelection): el
+    // resto de cada registro se recorre pero no se convierte a String ni se
+    // guarda en la hoja. La hoja no queda asociada al archivo (no se puede
+    // guardar encima)
+    public static Sheet readCsv(String filename, RowSelection selection, LoadProgress progress) throws Exception {
+        if (selection == null) return readCsv(filename, progress);
+        Path path = Paths.get(filename);
+        if (CsvxFormat.isCsvx(path)) throw new IOException("--cols y --where no funcionan con .csvx");
+        boolean gzip = ParallelGzip.isGzip(path);
+        if (!gzip && Files.size(path) >= PARALLEL_THRESHOLD) {
+            return ParallelCsvParser.parse(path, Dialect.sniff(path), selection, progress);
+        }
+
+        Sheet sheet = new Sheet();
+        long start = System.nanoTime();
+        long count = 0;
+        try (CsvStreamReader reader = new CsvStreamReader(gzip ? ParallelGzip.open(path) : Files.newInputStream(path),
+                selection)) {
+            sheet.setDialect(reader.getDialect());
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                sheet.appendRow(row);
+                count++;
+                if (progress != null && count % PROGRESS_EVERY == 0) {
+                    progress.update(count, rowsPerSecond(count, start));
+                }
+            }
+            sheet.addSkippedRows(reader.getSkipped());
+        }
+        sheet.finishLoad();
+        if (progress != null) progress.update(count, rowsPerSecond(count, start));
         return sheet;
     }
 
-    public static void writeCsv(Sheet sheet, String filename) throws Exception {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(filename))) {
-            for (String[] row : sheet.getRows()) {
-                writer.writeNext(row);
+    // --cols (ej: "nombre,edad,C") y --where (ej: "edad>30", "I==Peru"); las
+    // columnas se nombran por el encabezado o por letra (A, B, ..., Z, AA, ...).
+    // Cualquiera de los dos puede ser null
+    public static RowSelection resolveSelection(String filename, String colsSpec, String whereSpec) throws IOException {
+        Path path = Paths.get(filename);
+        String[] header;
+        Dialect dialect;
+        try (CsvStreamReader reader = new CsvStreamReader(
+                ParallelGzip.isGzip(path) ? ParallelGzip.open(path) : Files.newInputStream(path))) {
+            dialect = reader.getDialect();
+            header = reader.readNext();
+        }
+        if (header == null) header = new String[0];
+
+        int[] cols = null;
+        if (colsSpec != null) {
+            List<Integer> list = new ArrayList<>();
+            for (String name : colsSpec.split(",")) {
+                name = name.trim();
+                if (name.isEmpty()) continue;
+                int col = resolveColumn(name, header, dialect);
+                if (!list.contains(col)) list.add(col);
+            }
+            if (list.isEmpty()) throw new IOException("--cols sin columnas");
+            cols = list.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        Condition where = null;
+        if (whereSpec != null) {
+            int op = 0;
+            while (op < whereSpec.length() && "<>=!".indexOf(whereSpec.charAt(op)) < 0) op++;
+            int col = resolveColumn(whereSpec.substring(0, op).trim(), header, dialect);
+            where = Condition.parse(col, whereSpec.substring(op));
+            if (where == null) throw new IOException("Condición inválida: " + whereSpec);
+        }
+        return new RowSelection(cols, where);
+    }
+
+    private static int resolveColumn(String name, String[] header, Dialect dialect) throws IOException {
+        int col = dialect.hasHeader() ? Arrays.asList(header).indexOf(name) : -1;
+        if (col < 0 && !name.isEmpty() && BatchMode.letters(name) == name.length()) col = BatchMode.columnIndex(name);
+        if (col < 0 || col >= header.length) throw new IOException("No existe la columna " + name);
+        return col;
+    }
+
+    // Apertura diferida: solo se construye el índice de filas; las filas se
+    // leen del archivo cuando se necesitan (ver LazyRowList).
+    // Si ya existe un índice válido (archivo.csv.idx) se usa sin recorrer el CSV.
+    public static Sheet openLazy(String filename, LoadProgress progress) throws Exception {
+        Path path = Paths.get(filename);
+        if (CsvxFormat.isCsvx(path)) return openCsvx(path, progress);
+        // un archivo comprimido no se puede leer por offsets
+        if (ParallelGzip.isGzip(path)) return readCsv(filename, progress);
+        Dialect dialect = Dialect.sniff(path);
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        RowIndex index = RowIndex.load(path);
+        if (index == null) {
+            index = RowIndex.build(ch, dialect, progress);
+            LazyRowList rows = new LazyRowList(ch, index, dialect);
+            try {
+                index.save(path);
+            } catch (IOException e) {
+                // sin permiso de escritura: se sigue sin índice guardado
+            }
+            return lazySheet(path, rows, index, dialect);
+        }
+        if (progress != null) progress.update(index.getRowCount(), 0);
+        return lazySheet(path, new LazyRowList(ch, index, dialect), index, dialect);
+    }
+
+    // Sin copiar celdas: las filas quedan como posiciones dentro del archivo
+    // mapeado y cada celda se decodifica al leerla (ver SliceRowList)
+    public static Sheet openZeroCopy(String filename, LoadProgress progress) throws Exception {
+        Path path = Paths.get(filename);
+        if (CsvxFormat.isCsvx(path)) return openCsvx(path, progress);
+        if (ParallelGzip.isGzip(path)) return readCsv(filename, progress);
+        Dialect dialect = Dialect.sniff(path);
+        SliceRowList rows = SliceRowList.open(path, dialect, progress);
+        Sheet sheet = new Sheet(rows, rows.getColCount());
+        sheet.setSource(path, rows.getIndex());
+        sheet.setDialect(dialect);
+        return sheet;
+    }
+
+    // Varios archivos (o patrones como data-2026-10-*.csv) en una sola hoja.
+    // Cada archivo se lee en paralelo con readPart; las columnas se unen por
+    // nombre de encabezado (las que faltan en un archivo quedan vacías; un
+    // archivo sin encabezado se une por posición) y las filas se agregan en
+    // el orden de los archivos. Los tipos se infieren una sola vez, en la
+    // hoja unida. La hoja recuerda de qué archivo viene cada fila
+    // (Sheet.getSourceFile / filterBySource).
+    public static Sheet readMany(List<String> names, LoadProgress progress) throws Exception {
+        List<Path> files = expand(names);
+        if (files.isEmpty()) throw new IOException("Ningún archivo coincide con " + names);
+        long start = System.nanoTime();
+
+        List<ForkJoinTask<Sheet>> tasks = new ArrayList<>();
+        for (Path file : files) tasks.add(ForkJoinPool.commonPool().submit(() -> readPart(file)));
+        Sheet[] parts = new Sheet[files.size()];
+        long loaded = 0;
+        for (int k = 0; k < parts.length; k++) {
+            try {
+                parts[k] = tasks.get(k).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            loaded += parts[k].getRowCount();
+            if (progress != null) progress.update(loaded, rowsPerSecond(loaded, start));
+        }
+
+        // columna de la unión para cada columna de cada archivo; cada archivo
+        // con su propio encabezado (o sin él)
+        Dialect dialect = parts[0].getDialect();
+        for (int k = parts.length - 1; k >= 0; k--) {
+            if (parts[k].getDialect().hasHeader()) dialect = parts[k].getDialect();
+        }
+        boolean header = dialect.hasHeader();
+        Map<String, Integer> union = new LinkedHashMap<>();
+        List<String> headers = new ArrayList<>();
+        int[][] mapping = new int[parts.length][];
+        // primero los archivos con encabezado, por nombre; un nombre
+        // repetido en el mismo archivo es otra columna
+        for (int k = 0; k < parts.length; k++) {
+            if (!parts[k].getDialect().hasHeader()) continue;
+            int cols = parts[k].getColCount();
+            String[] head = parts[k].getRowCount() > 0 ? parts[k].getRows().get(0) : new String[0];
+            Map<String, Integer> seen = new HashMap<>();
+            mapping[k] = new int[cols];
+            for (int c = 0; c < cols; c++) {
+                String name = c < head.length ? head[c] : "";
+                int occurrence = seen.merge(name, 1, Integer::sum);
+                mapping[k][c] = union.computeIfAbsent(name + "\0" + occurrence, key -> {
+                    headers.add(name);
+                    return headers.size() - 1;
+                });
+            }
+        }
+        // después los que no tienen, por posición
+        for (int k = 0; k < parts.length; k++) {
+            if (mapping[k] != null) continue;
+            int cols = parts[k].getColCount();
+            mapping[k] = new int[cols];
+            for (int c = 0; c < cols; c++) {
+                if (c == headers.size()) headers.add("");
+                mapping[k][c] = c;
+            }
+        }
+
+        Sheet sheet = new Sheet();
+        sheet.setDialect(dialect);
+        if (header) sheet.appendRow(headers.toArray(new String[0]));
+        int[] starts = new int[parts.length + 1];
+        for (int k = 0; k < parts.length; k++) {
+            starts[k] = sheet.getTotalOriginalRows();
+            int from = parts[k].getDialect().hasHeader() ? 1 : 0;
+            for (String[] row : remap(parts[k].getRows(), from, mapping[k])) sheet.appendRow(row);
+            parts[k] = null; // las filas ya pasaron a la hoja
+        }
+        starts[parts.length] = sheet.getTotalOriginalRows();
+        sheet.finishLoad();
+        sheet.setSourceFiles(files, starts);
+        if (progress != null) progress.update(sheet.getRowCount(), rowsPerSecond(sheet.getRowCount(), start));
+        return sheet;
+    }
+
+    // Las filas de un archivo tal como se leen, sin inferir tipos ni
+    // convertir columnas (eso se hace una vez en la hoja unida)
+    private static Sheet readPart(Path path) throws Exception {
+        if (CsvxFormat.isCsvx(path)) return openCsvx(path, null);
+        Sheet part = new Sheet(new ArrayList<>(), 0);
+        boolean gzip = ParallelGzip.isGzip(path);
+        if (!gzip && Files.size(path) >= PARALLEL_THRESHOLD) {
+            Dialect dialect = Dialect.sniff(path);
+            part.setDialect(dialect);
+            ParallelCsvParser.parseChunks(path, dialect, ParallelCsvParser.ROWS_CHUNK_SIZE, null, (rows, skipped, end) -> {
+                for (String[] row : rows) part.appendRow(row);
+            });
+            return part;
+        }
+        stream(part, path, gzip, null, 0);
+        return part;
+    }
+
+    // Filas desde 'from' con las columnas en el orden de la unión; si el
+    // archivo ya tiene ese orden se usan las mismas filas sin copiarlas
+    private static List<String[]> remap(List<String[]> rows, int from, int[] mapping) {
+        boolean same = true;
+        for (int c = 0; c < mapping.length; c++) same &= mapping[c] == c;
+        if (same) return rows.subList(Math.min(from, rows.size()), rows.size());
+
+        int width = Arrays.stream(mapping).max().orElse(-1) + 1;
+        String[][] out = new String[Math.max(0, rows.size() - from)][];
+        IntStream.range(0, out.length).parallel().forEach(i -> {
+            String[] row = rows.get(from + i);
+            String[] mapped = new String[width];
+            Arrays.fill(mapped, "");
+            for (int c = 0; c < row.length && c < mapping.length; c++) mapped[mapping[c]] = row[c];
+            out[i] = mapped;
+        });
+        return Arrays.asList(out);
+    }
+
+    // Nombres de archivo tal cual, o los que coinciden con un patrón (*, ?, [..])
+    // en su directorio, ordenados por nombre
+    static List<Path> expand(List<String> names) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : names) {
+            if (!isGlob(name)) {
+                files.add(Paths.get(name));
+                continue;
             }
+            Path pattern = Paths.get(name);
+            Path dir = pattern.getParent() == null ? Paths.get(".") : pattern.getParent();
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.getFileName());
+            List<Path> matched = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path p : entries) {
+                    if (Files.isRegularFile(p) && matcher.matches(p.getFileName())) matched.add(p);
+                }
+            }
+            matched.sort(null);
+            files.addAll(matched);
+        }
+        return files;
+    }
+
+    public static boolean isGlob(String name) {
+        return name != null && (name.contains("*") || name.contains("?") || name.contains("["));
+    }
+
+    // Un .csvx ya está por columnas: se mapea sin parsear nada
+    private static Sheet openCsvx(Path path, LoadProgress progress) throws IOException {
+        Sheet sheet = CsvxFormat.open(path);
+        if (progress != null) progress.update(sheet.getRowCount(), 0);
+        return sheet;
+    }
+
+    private static Sheet lazySheet(Path path, LazyRowList rows, RowIndex index, Dialect dialect) {
+        Sheet sheet = new Sheet(rows, index.getColCount());
+        sheet.setSource(path, index);
+        sheet.setDialect(dialect);
+        return sheet;
+    }
+
+    // Hay un índice guardado que todavía corresponde al CSV
+    public static boolean hasValidIndex(String filename) {
+        try {
+            return RowIndex.load(Paths.get(filename)) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static double rowsPerSecond(long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? rows / seconds : rows;
+    }
+
+    // Guarda la hoja; si viene de un archivo indexado solo se reescriben
+    // las filas modificadas (ver CsvSaver)
+    public static void writeCsv(Sheet sheet, String filename) throws Exception {
+        Path target = Paths.get(filename);
+        RowIndex written = CsvSaver.write(sheet, target, null);
+        if (sheet.savesOverSource(target)) {
+            sheet.clearChanges();
+            sheet.markSaved(written);
         }
     }
 }
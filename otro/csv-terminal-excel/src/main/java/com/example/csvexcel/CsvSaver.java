@@ -0,0 +1,285 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Guarda una hoja en CSV (o en .csvx / .gz según el destino). Si la hoja
+// conoce el offset de cada fila en su archivo de origen, las filas sin
+// cambios se copian tal cual del origen (transferTo) y solo se vuelven a
+// codificar las modificadas.
+// En ambos casos se anota dónde empieza cada fila escrita, para que el
+// archivo guardado sirva como nuevo origen. Se respeta el formato con que
+// se leyó la hoja (separador, comillas, codificación y BOM, ver Dialect).
+// Las filas se codifican con CsvEncoder en paralelo, por bloques, y se
+// escriben en orden.
+// Se escribe en un temporal junto al destino, se sincroniza con el disco y
+// se mueve de forma atómica: si algo falla, el archivo anterior queda intacto.
+public class CsvSaver {
+
+    // Filas que codifica cada tarea al guardar en paralelo
+    private static final int CHUNK_ROWS = 4096;
+
+    public static RowIndex write(Sheet sheet, Path target, LoadProgress progress) throws IOException {
+        // con un filtro activo solo se escribirían las filas visibles y el
+        // archivo de origen perdería el resto
+        if (sheet.isFiltered() && sheet.isSource(target)) {
+            throw new IOException("hay un filtro activo, se perderían las filas ocultas");
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        RowIndex written;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            if (isCsvxTarget(target)) {
+                CsvxFormat.write(sheet, out, progress);
+                written = null;
+            } else if (isGzipTarget(target)) {
+                writeGzip(sheet, out, progress);
+                written = null; // los offsets no sirven sobre datos comprimidos
+            } else {
+                written = sheet.canSaveIncrementally()
+                        ? writeIncremental(sheet, out, progress)
+                        : writeFull(sheet, out, progress);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        sheet.beforeReplace(tmp, target);
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target);
+        return written;
+    }
+
+    // Sincroniza el directorio para que el renombrado también llegue al disco
+    // (no todos los sistemas permiten abrir un directorio, en ese caso se omite)
+    private static void syncDirectory(Path target) {
+        Path dir = target.toAbsolutePath().getParent();
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // no soportado
+        }
+    }
+
+    // Formato binario por columnas si el destino termina en .csvx o ya es uno
+    private static boolean isCsvxTarget(Path target) throws IOException {
+        if (target.getFileName().toString().endsWith(".csvx")) return true;
+        return Files.isRegularFile(target) && CsvxFormat.isCsvx(target);
+    }
+
+    // Se comprime si el destino termina en .gz o ya es un archivo gzip
+    private static boolean isGzipTarget(Path target) throws IOException {
+        if (target.getFileName().toString().endsWith(".gz")) return true;
+        return Files.isRegularFile(target) && ParallelGzip.isGzip(target);
+    }
+
+    private static void report(LoadProgress progress, long rows, long start) {
+        if (progress != null) progress.update(rows, CsvReader.rowsPerSecond(rows, start));
+    }
+
+    // Todas las filas comprimidas en bloques gzip independientes (en paralelo)
+    private static void writeGzip(Sheet sheet, FileChannel out, LoadProgress progress) throws IOException {
+        ParallelGzip.Output gzip = new ParallelGzip.Output(Channels.newOutputStream(out));
+        Dialect dialect = sheet.getDialect();
+        gzip.write(dialect.bomBytes());
+        writeRows(sheet.getRows(), dialect, Channels.newChannel(gzip), null, 0, progress);
+        gzip.finish();
+    }
+
+    private static RowIndex writeFull(Sheet sheet, FileChannel out, LoadProgress progress) throws IOException {
+        List<String[]> rows = sheet.getRows();
+        long[] offsets = new long[rows.size() + 1];
+        Dialect dialect = sheet.getDialect();
+        long pos = out.write(ByteBuffer.wrap(dialect.bomBytes()));
+        writeRows(rows, dialect, out, offsets, pos, progress);
+        return new RowIndex(LongBuffer.wrap(offsets), sheet.getColCount());
+    }
+
+    // Codifica las filas en paralelo: cada tarea toma CHUNK_ROWS filas y su
+    // propio CsvEncoder (que se reutiliza de una tanda a la otra); los búferes
+    // de cada tanda se escriben en orden con una sola escritura agrupada.
+    // Si 'offsets' no es null se anota dónde empieza cada fila (desde 'pos').
+    private static void writeRows(List<String[]> rows, Dialect dialect, WritableByteChannel out,
+                                  long[] offsets, long pos, LoadProgress progress) throws IOException {
+        long start = System.nanoTime();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(1, pool.getParallelism()) * 2;
+        CsvEncoder[] encoders = new CsvEncoder[window];
+        int[][] lengths = new int[window][CHUNK_ROWS];
+        for (int k = 0; k < window; k++) encoders[k] = new CsvEncoder(dialect);
+        ByteBuffer[] buffers = new ByteBuffer[window];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(window);
+
+        int n = rows.size();
+        for (int first = 0; first < n; first += window * CHUNK_ROWS) {
+            // las filas se piden desde este hilo (una LazyRowList no es segura
+            // entre hilos); solo la codificación va en paralelo
+            tasks.clear();
+            for (int k = 0; k < window && first + k * CHUNK_ROWS < n; k++) {
+                int from = first + k * CHUNK_ROWS;
+                String[][] batch = new String[Math.min(n, from + CHUNK_ROWS) - from][];
+                for (int i = 0; i < batch.length; i++) batch[i] = rows.get(from + i);
+                CsvEncoder encoder = encoders[k];
+                int[] lens = lengths[k];
+                tasks.add(pool.submit(() -> {
+                    encoder.reset();
+                    for (int i = 0; i < batch.length; i++) lens[i] = encoder.encode(batch[i]);
+                }));
+            }
+
+            int chunks = tasks.size();
+            for (int k = 0; k < chunks; k++) {
+                tasks.get(k).join();
+                buffers[k] = encoders[k].buffer();
+                if (offsets == null) continue;
+                int from = first + k * CHUNK_ROWS;
+                int count = Math.min(n, from + CHUNK_ROWS) - from;
+                for (int i = 0; i < count; i++) {
+                    offsets[from + i] = pos;
+                    pos += lengths[k][i];
+                }
+            }
+            writeAll(out, buffers, chunks);
+            report(progress, Math.min(n, first + window * CHUNK_ROWS), start);
+        }
+        if (offsets != null) offsets[n] = pos;
+        report(progress, n, start);
+    }
+
+    private static void writeAll(WritableByteChannel out, ByteBuffer[] buffers, int count) throws IOException {
+        if (out instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) out;
+            long remaining = 0;
+            for (int k = 0; k < count; k++) remaining += buffers[k].remaining();
+            while (remaining > 0) remaining -= gathering.write(buffers, 0, count);
+        } else {
+            for (int k = 0; k < count; k++) {
+                while (buffers[k].hasRemaining()) out.write(buffers[k]);
+            }
+        }
+    }
+
+    // Recorre las filas del origen por tramos: los tramos limpios se copian
+    // byte a byte del archivo original y los modificados se codifican de nuevo
+    private static RowIndex writeIncremental(Sheet sheet, FileChannel out, LoadProgress progress) throws IOException {
+        long start = System.nanoTime();
+        RowIndex src = sheet.getSourceIndex();
+        BitSet dirty = sheet.getDirtyRows();
+        List<String[]> rows = sheet.getRows();
+        int srcRows = src.getRowCount();
+        long[] offsets = new long[rows.size() + 1];
+        RowEncoder encoder = new RowEncoder(Channels.newOutputStream(out), sheet.getDialect());
+        long pos = encoder.writeBom();
+
+        try (FileChannel in = FileChannel.open(sheet.getSourcePath(), StandardOpenOption.READ)) {
+            int r = 0;
+            while (r < srcRows) {
+                int d = dirty.nextSetBit(r);
+                if (d < 0 || d > srcRows) d = srcRows;
+
+                // tramo sin cambios [r, d): se copia y los offsets solo se desplazan
+                long delta = pos - src.offset(r);
+                for (int i = r; i < d; i++) offsets[i] = src.offset(i) + delta;
+                encoder.flush();
+                pos += transfer(in, src.offset(r), src.offset(d), out);
+                report(progress, d, start);
+                if (d == srcRows) break;
+
+                // tramo modificado [d, e): se vuelve a codificar
+                int e = Math.min(dirty.nextClearBit(d), srcRows);
+                for (int i = d; i < e; i++) {
+                    offsets[i] = pos;
+                    pos += encoder.write(rows.get(i));
+                }
+                r = e;
+            }
+
+            // el último registro del origen puede no terminar en salto de línea
+            encoder.flush();
+            if (rows.size() > srcRows && pos > 0 && !endsWithNewline(out, pos)) {
+                pos += out.write(ByteBuffer.wrap(sheet.getDialect().getLineEnd().getBytes(StandardCharsets.US_ASCII)));
+            }
+        }
+
+        // filas agregadas después de abrir el archivo
+        for (int i = srcRows; i < rows.size(); i++) {
+            offsets[i] = pos;
+            pos += encoder.write(rows.get(i));
+        }
+        encoder.flush();
+        offsets[rows.size()] = pos;
+        report(progress, rows.size(), start);
+        return new RowIndex(LongBuffer.wrap(offsets), sheet.getColCount());
+    }
+
+    private static long transfer(FileChannel in, long from, long to, FileChannel out) throws IOException {
+        long done = 0;
+        while (from + done < to) {
+            done += in.transferTo(from + done, to - from - done, out);
+        }
+        return done;
+    }
+
+    private static boolean endsWithNewline(FileChannel out, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        out.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    // Codifica filas con CsvEncoder en el formato de la hoja y vuelca el
+    // búfer a la salida por bloques; write devuelve los bytes de la fila
+    private static class RowEncoder {
+        private static final int FLUSH_AT = 64 * 1024;
+
+        private final CsvEncoder encoder;
+        private final OutputStream out;
+        private final Dialect dialect;
+
+        RowEncoder(OutputStream out, Dialect dialect) {
+            this.out = out;
+            this.dialect = dialect;
+            this.encoder = new CsvEncoder(dialect);
+        }
+
+        // BOM al principio del archivo si el original lo tenía; devuelve sus bytes
+        long writeBom() {
+            byte[] bom = dialect.bomBytes();
+            encoder.raw(bom);
+            return bom.length;
+        }
+
+        long write(String[] row) throws IOException {
+            int n = encoder.encode(row);
+            if (encoder.size() >= FLUSH_AT) flush();
+            return n;
+        }
+
+        void flush() throws IOException {
+            encoder.writeTo(out);
+            encoder.reset();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.csvexcel;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Lee registros CSV de un flujo (archivo, gzip o stdin) con CsvByteParser
+// sobre un búfer de tamaño fijo: la memoria no depende del tamaño de la
+// entrada. El búfer solo crece si un registro no entra entero en él.
+// El formato (separador, comillas, codificación) se detecta al principio.
+public class CsvStreamReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final InputStream in;
+    private final CsvByteParser parser;
+    private final Dialect dialect;
+    private final RowSelection selection; // columnas y filas a cargar (null = todo)
+    private boolean first = true;
+    private long skipped = 0;
+    private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    public CsvStreamReader(InputStream in) throws IOException {
+        this(in, null);
+    }
+
+    public CsvStreamReader(InputStream in, RowSelection selection) throws IOException {
+        this.selection = selection;
+        this.in = new BufferedInputStream(in, Dialect.SAMPLE_BYTES);
+        this.dialect = Dialect.sniff(this.in);
+        this.in.skipNBytes(dialect.bomLength());
+        this.parser = new CsvByteParser(dialect);
+    }
+
+    public Dialect getDialect() { return dialect; }
+
+    // Registros descartados por la condición de 'selection' hasta ahora
+    public long getSkipped() { return skipped; }
+
+    // Siguiente registro (que cumpla la condición, si hay), o null al final de la entrada
+    public String[] readNext() throws IOException {
+        while (true) {
+            if (pos < limit) {
+                int next = parser.scan(buf, pos, limit);
+                // un \r al final del búfer puede ser la mitad de un \r\n
+                boolean complete = parser.isTerminated() && !(next == limit && buf.get(limit - 1) == '\r');
+                if (complete || eof) {
+                    boolean header = first && dialect.hasHeader();
+                    first = false;
+                    String[] row = selection == null ? parser.toRow(buf) : selection.toRow(parser, buf, header);
+                    pos = next;
+                    if (row != null) return row;
+                    skipped++;
+                    continue;
+                }
+            } else if (eof) {
+                return null;
+            }
+            fill();
+        }
+    }
+
+    // Mueve el registro incompleto al principio y lee más bytes
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf.array(), pos, buf.array(), 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+            System.arraycopy(buf.array(), 0, bigger.array(), 0, limit);
+            buf = bigger;
+        }
+        int n = in.read(buf.array(), limit, buf.capacity() - limit);
+        if (n < 0) eof = true;
+        else limit += n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,491 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Formato binario por columnas (.csvx) para reabrir una hoja sin parsear texto.
+//
+// Todo en little-endian y con cada sección alineada a 8 bytes, para leerla
+// mapeada en memoria sin copiar. Abrir un .csvx solo lee el encabezado y el
+// directorio; las celdas se decodifican cuando se piden.
+//
+//   encabezado  "CSVX", versión, filas, columnas, offset de la fila 0
+//   directorio  por columna: tipo, tamaño del diccionario, offset, largo, offset auxiliar
+//   fila 0      (el encabezado de la hoja) como una sección de texto
+//   columnas    filas 1..n-1 de cada columna:
+//     LONG / DOUBLE  bitmap de vacíos + valores crudos (solo si todos los
+//                    valores se vuelven a escribir exactamente igual)
+//     DICT           un código int por fila + diccionario de textos
+//     TEXT           offsets (n + 1 longs) + bytes UTF-8
+public class CsvxFormat {
+
+    private static final int MAGIC = 0x58565343; // "CSVX" en little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int DIR_ENTRY_SIZE = 32;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int PROGRESS_EVERY = 10_000;
+
+    // Más valores distintos que esto no se guardan como diccionario
+    static final int DICT_MAX = 1 << 16;
+
+    static final int LONG = 1;
+    static final int DOUBLE = 2;
+    static final int DICT = 3;
+    static final int TEXT = 4;
+
+    // "CSVX" y una versión (int chico: sus bytes 0 no aparecen en un CSV de
+    // texto), así un CSV cuyo encabezado empieza con "CSVX" no se confunde
+    // con un .csvx. Una versión desconocida se reconoce igual y open() avisa
+    public static boolean isCsvx(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] b = in.readNBytes(HEADER_SIZE);
+            if (b.length < HEADER_SIZE) return false;
+            ByteBuffer head = le(ByteBuffer.wrap(b));
+            int magic = head.getInt();
+            int version = head.getInt();
+            return magic == MAGIC && version > 0 && version < 256;
+        }
+    }
+
+    // ===================== escritura =====================
+
+    // Escribe las filas de la hoja (las visibles, igual que al guardar CSV).
+    // Primero se recorren las filas para elegir el tipo de cada columna y
+    // calcular dónde va cada sección; después se recorren otra vez
+    // escribiendo cada columna en su lugar.
+    public static void write(Sheet sheet, FileChannel out, LoadProgress progress) throws IOException {
+        long start = System.nanoTime();
+        List<String[]> rows = sheet.getRows();
+        int n = rows.size();
+        int cols = sheet.getColCount();
+        int dataRows = Math.max(0, n - 1);
+
+        ColumnStats[] stats = new ColumnStats[cols];
+        for (int c = 0; c < cols; c++) stats[c] = new ColumnStats();
+        for (int r = 1; r < n; r++) {
+            String[] row = rows.get(r);
+            for (int c = 0; c < cols; c++) stats[c].add(cell(row, c));
+        }
+
+        // ubicación de cada sección
+        String[] header = new String[cols];
+        if (n > 0) for (int c = 0; c < cols; c++) header[c] = cell(rows.get(0), c);
+        long pos = align(HEADER_SIZE + (long) DIR_ENTRY_SIZE * cols);
+        long headerPos = n > 0 ? pos : 0;
+        if (n > 0) pos = align(pos + 8L * (cols + 1) + utf8Total(header));
+        for (int c = 0; c < cols; c++) {
+            pos = stats[c].layout(pos, dataRows);
+        }
+
+        ByteBuffer head = le(ByteBuffer.allocate(HEADER_SIZE + DIR_ENTRY_SIZE * cols));
+        head.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(cols).putLong(headerPos);
+        for (ColumnStats s : stats) {
+            head.putInt(s.kind).putInt(s.dict == null ? 0 : s.dict.size())
+                    .putLong(s.offset).putLong(s.length).putLong(s.aux);
+        }
+        head.flip();
+        writeFully(out, head, 0);
+        if (n > 0) writeTextSection(out, headerPos, header);
+
+        // segunda pasada: cada columna escribe en su propia sección
+        ColumnWriter[] writers = new ColumnWriter[cols];
+        for (int c = 0; c < cols; c++) writers[c] = new ColumnWriter(out, stats[c], dataRows);
+        for (int r = 1; r < n; r++) {
+            String[] row = rows.get(r);
+            for (int c = 0; c < cols; c++) writers[c].add(cell(row, c));
+            if (progress != null && r % PROGRESS_EVERY == 0) {
+                progress.update(r, CsvReader.rowsPerSecond(r, start));
+            }
+        }
+        for (ColumnWriter w : writers) w.finish();
+        out.truncate(pos);
+        if (progress != null) progress.update(n, CsvReader.rowsPerSecond(n, start));
+    }
+
+    private static String cell(String[] row, int c) {
+        return c < row.length && row[c] != null ? row[c] : "";
+    }
+
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    private static ByteBuffer le(ByteBuffer buf) {
+        return buf.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) pos += out.write(buf, pos);
+    }
+
+    private static long utf8Total(String[] values) {
+        long total = 0;
+        for (String v : values) total += utf8Length(v);
+        return total;
+    }
+
+    // Largo en UTF-8 sin codificar el texto
+    static int utf8Length(String s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) len++;
+            else if (ch < 0x800) len += 2;
+            else if (Character.isHighSurrogate(ch) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else len += 3;
+        }
+        return len;
+    }
+
+    // Sección de texto completa (offsets + bytes) a partir de un arreglo
+    private static void writeTextSection(FileChannel out, long pos, String[] values) throws IOException {
+        SectionWriter offsets = new SectionWriter(out, pos);
+        SectionWriter bytes = new SectionWriter(out, pos + 8L * (values.length + 1));
+        long off = 0;
+        for (String v : values) {
+            offsets.putLong(off);
+            off += bytes.putString(v);
+        }
+        offsets.putLong(off);
+        offsets.flush();
+        bytes.flush();
+    }
+
+    // Lo que se sabe de una columna después de la primera pasada
+    private static class ColumnStats {
+        boolean longs = true;
+        boolean doubles = true;
+        Map<String, Integer> dict = new HashMap<>();
+        List<String> dictValues = new ArrayList<>();
+        long textBytes = 0;
+
+        int kind;
+        long offset, length, aux;
+
+        void add(String v) {
+            textBytes += utf8Length(v);
+            if (!v.isEmpty()) {
+                if (longs && !isExactLong(v)) longs = false;
+                if (!longs && doubles && !isExactDouble(v)) doubles = false;
+            }
+            if (dict != null && !dict.containsKey(v)) {
+                if (dict.size() == DICT_MAX) {
+                    dict = null;
+                    dictValues = null;
+                } else {
+                    dict.put(v, dict.size());
+                    dictValues.add(v);
+                }
+            }
+        }
+
+        // Elige el tipo y reserva la sección a partir de 'pos'; devuelve el fin
+        long layout(long pos, int rows) {
+            offset = pos;
+            long bitmap = 8L * ((rows + 63) / 64);
+            if (longs || doubles) {
+                kind = longs ? LONG : DOUBLE;
+                aux = pos + bitmap;
+                length = bitmap + 8L * rows;
+                dict = null;
+                dictValues = null;
+            } else if (dict != null && dict.size() * 2L <= Math.max(rows, 1)) {
+                kind = DICT;
+                aux = align(pos + 4L * rows);
+                long dictBytes = 0;
+                for (String v : dictValues) dictBytes += utf8Length(v);
+                length = aux - pos + 8L * (dictValues.size() + 1) + dictBytes;
+            } else {
+                kind = TEXT;
+                aux = pos + 8L * (rows + 1);
+                length = aux - pos + textBytes;
+                dict = null;
+                dictValues = null;
+            }
+            return align(pos + length);
+        }
+    }
+
+    // Valores que Long.toString devuelve idénticos (sin "+", ceros a la izquierda ni "-0")
+    private static boolean isExactLong(String v) {
+        char ch = v.charAt(0);
+        if (ch != '-' && (ch < '0' || ch > '9')) return false;
+        try {
+            return Long.toString(Long.parseLong(v)).equals(v);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isExactDouble(String v) {
+        char ch = v.charAt(0);
+        if (ch != '-' && (ch < '0' || ch > '9')) return false;
+        try {
+            return Double.toString(Double.parseDouble(v)).equals(v);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Escribe en orden dentro de una sección con escrituras posicionales
+    private static class SectionWriter {
+        private final FileChannel out;
+        private final ByteBuffer buf = le(ByteBuffer.allocate(BUFFER_SIZE));
+        private long pos;
+
+        SectionWriter(FileChannel out, long pos) {
+            this.out = out;
+            this.pos = pos;
+        }
+
+        void putLong(long v) throws IOException {
+            if (buf.remaining() < 8) flush();
+            buf.putLong(v);
+        }
+
+        void putInt(int v) throws IOException {
+            if (buf.remaining() < 4) flush();
+            buf.putInt(v);
+        }
+
+        int putString(String v) throws IOException {
+            byte[] b = v.getBytes(StandardCharsets.UTF_8);
+            if (buf.remaining() < b.length) flush();
+            if (b.length > buf.capacity()) {
+                writeFully(out, ByteBuffer.wrap(b), pos);
+                pos += b.length;
+            } else {
+                buf.put(b);
+            }
+            return b.length;
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            int n = buf.remaining();
+            writeFully(out, buf, pos);
+            pos += n;
+            buf.clear();
+        }
+    }
+
+    // Escritura de una columna durante la segunda pasada
+    private static class ColumnWriter {
+        private final ColumnStats stats;
+        private final SectionWriter main;
+        private final SectionWriter second;
+        private final FileChannel out;
+        private final long[] nulls;
+        private long textOffset = 0;
+        private int row = 0;
+
+        ColumnWriter(FileChannel out, ColumnStats stats, int rows) throws IOException {
+            this.out = out;
+            this.stats = stats;
+            switch (stats.kind) {
+                case LONG:
+                case DOUBLE:
+                    nulls = new long[(rows + 63) / 64];
+                    main = new SectionWriter(out, stats.aux);
+                    second = null;
+                    break;
+                case DICT:
+                    nulls = null;
+                    main = new SectionWriter(out, stats.offset);
+                    second = null;
+                    writeTextSection(out, stats.aux, stats.dictValues.toArray(new String[0]));
+                    break;
+                default:
+                    nulls = null;
+                    main = new SectionWriter(out, stats.offset);
+                    second = new SectionWriter(out, stats.aux);
+            }
+        }
+
+        void add(String v) throws IOException {
+            switch (stats.kind) {
+                case LONG:
+                    if (v.isEmpty()) {
+                        nulls[row >> 6] |= 1L << row;
+                        main.putLong(0);
+                    } else main.putLong(Long.parseLong(v));
+                    break;
+                case DOUBLE:
+                    if (v.isEmpty()) {
+                        nulls[row >> 6] |= 1L << row;
+                        main.putLong(0);
+                    } else main.putLong(Double.doubleToRawLongBits(Double.parseDouble(v)));
+                    break;
+                case DICT:
+                    main.putInt(stats.dict.get(v));
+                    break;
+                default:
+                    main.putLong(textOffset);
+                    textOffset += second.putString(v);
+            }
+            row++;
+        }
+
+        void finish() throws IOException {
+            if (nulls != null) {
+                ByteBuffer bitmap = le(ByteBuffer.allocate(nulls.length * 8));
+                bitmap.asLongBuffer().put(nulls);
+                writeFully(out, bitmap, stats.offset);
+            }
+            if (stats.kind == TEXT) main.putLong(textOffset);
+            main.flush();
+            if (second != null) second.flush();
+        }
+    }
+
+    // ===================== lectura =====================
+
+    // Abre un .csvx mapeando cada sección; no lee ninguna celda
+    public static Sheet open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = le(ByteBuffer.allocate(HEADER_SIZE));
+            readFully(ch, head, 0);
+            head.flip();
+            if (head.remaining() < HEADER_SIZE || head.getInt() != MAGIC) throw new IOException("No es un archivo .csvx");
+            int version = head.getInt();
+            if (version != VERSION) throw new IOException("Versión de .csvx no soportada: " + version);
+            int rows = head.getInt();
+            int cols = head.getInt();
+            long headerPos = head.getLong();
+
+            ByteBuffer dir = le(ByteBuffer.allocate(DIR_ENTRY_SIZE * cols));
+            readFully(ch, dir, HEADER_SIZE);
+            dir.flip();
+            if (dir.remaining() < DIR_ENTRY_SIZE * cols) throw new IOException("Archivo .csvx incompleto");
+
+            String[] header = new String[cols];
+            if (rows > 0) {
+                TextColumn h = new TextColumn(ch, headerPos, headerPos + 8L * (cols + 1), cols);
+                for (int c = 0; c < cols; c++) header[c] = h.get(c);
+            }
+            int dataRows = Math.max(0, rows - 1);
+            Column[] columns = new Column[cols];
+            for (int c = 0; c < cols; c++) {
+                int kind = dir.getInt();
+                int dictSize = dir.getInt();
+                long offset = dir.getLong();
+                long length = dir.getLong();
+                long aux = dir.getLong();
+                if (offset + length > ch.size()) throw new IOException("Archivo .csvx incompleto");
+                switch (kind) {
+                    case LONG:
+                    case DOUBLE:
+                        columns[c] = new NumericColumn(ch, offset, aux, dataRows, kind == DOUBLE);
+                        break;
+                    case DICT:
+                        columns[c] = new DictColumn(ch, offset, aux, dataRows, dictSize);
+                        break;
+                    case TEXT:
+                        columns[c] = new TextColumn(ch, offset, aux, dataRows);
+                        break;
+                    default:
+                        throw new IOException("Tipo de columna desconocido en .csvx: " + kind);
+                }
+            }
+            Sheet sheet = new Sheet(new CsvxRowList(rows, header, columns), cols);
+            sheet.setSource(path, null);
+            return sheet;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) return;
+            pos += n;
+        }
+    }
+
+    private static ByteBuffer map(FileChannel ch, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE) throw new IOException("Sección de .csvx demasiado grande");
+        return le(ch.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+    }
+
+    // Valores de una columna (fila 0 = primera fila de datos)
+    interface Column {
+        String get(int row);
+    }
+
+    private static class NumericColumn implements Column {
+        private final LongBuffer nulls;
+        private final LongBuffer longs;
+        private final DoubleBuffer doubles;
+
+        NumericColumn(FileChannel ch, long offset, long valuesPos, int rows, boolean decimal) throws IOException {
+            nulls = map(ch, offset, valuesPos).asLongBuffer();
+            ByteBuffer values = map(ch, valuesPos, valuesPos + 8L * rows);
+            longs = decimal ? null : values.asLongBuffer();
+            doubles = decimal ? values.asDoubleBuffer() : null;
+        }
+
+        @Override
+        public String get(int row) {
+            if ((nulls.get(row >> 6) & (1L << row)) != 0) return "";
+            return longs != null ? Long.toString(longs.get(row)) : Double.toString(doubles.get(row));
+        }
+    }
+
+    private static class TextColumn implements Column {
+        private final LongBuffer offsets;
+        private final ByteBuffer bytes;
+
+        TextColumn(FileChannel ch, long offset, long bytesPos, int count) throws IOException {
+            offsets = map(ch, offset, bytesPos).asLongBuffer();
+            bytes = map(ch, bytesPos, bytesPos + offsets.get(count));
+        }
+
+        @Override
+        public String get(int row) {
+            int from = (int) offsets.get(row);
+            byte[] b = new byte[(int) offsets.get(row + 1) - from];
+            bytes.get(from, b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Los textos del diccionario se decodifican una vez y se comparten
+    private static class DictColumn implements Column {
+        private final IntBuffer codes;
+        private final TextColumn values;
+        private final String[] decoded;
+
+        DictColumn(FileChannel ch, long offset, long dictPos, int rows, int dictSize) throws IOException {
+            codes = map(ch, offset, offset + 4L * rows).asIntBuffer();
+            values = new TextColumn(ch, dictPos, dictPos + 8L * (dictSize + 1), dictSize);
+            decoded = new String[dictSize];
+        }
+
+        @Override
+        public String get(int row) {
+            int code = codes.get(row);
+            String v = decoded[code];
+            if (v == null) {
+                v = values.get(code);
+                decoded[code] = v;
+            }
+            return v;
+        }
+    }
+}
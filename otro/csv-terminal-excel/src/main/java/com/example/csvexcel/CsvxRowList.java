@@ -0,0 +1,48 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+// Filas de un .csvx mapeado en memoria: cada fila se arma al pedirla
+// leyendo su valor en cada columna. Las ediciones quedan en memoria.
+public class CsvxRowList extends OverlayRowList {
+
+    private int rows;
+    private String[] header;
+    private CsvxFormat.Column[] columns;
+
+    CsvxRowList(int rows, String[] header, CsvxFormat.Column[] columns) {
+        this.rows = rows;
+        this.header = header;
+        this.columns = columns;
+    }
+
+    @Override
+    public CsvxRowList snapshot() {
+        return copyOverlayTo(new CsvxRowList(rows, header, columns));
+    }
+
+    // Pasa a leer del .csvx recién guardado; solo quedan en memoria las filas
+    // marcadas en 'keep' y las que no llegaron a guardarse
+    public void rebase(Path path, BitSet keep) throws IOException {
+        CsvxRowList saved = (CsvxRowList) CsvxFormat.open(path).getRows();
+        rebaseOverlay(saved.rows, keep);
+        rows = saved.rows;
+        header = saved.header;
+        columns = saved.columns;
+    }
+
+    @Override
+    protected int baseSize() {
+        return rows;
+    }
+
+    @Override
+    protected String[] readRow(int row) {
+        if (row == 0) return header;
+        String[] values = new String[columns.length];
+        for (int c = 0; c < columns.length; c++) values[c] = columns[c].get(row - 1);
+        return values;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Formato de un CSV: separador, comillas, codificación, BOM, salto de línea
+// y si la primera fila es encabezado. Se detecta una vez mirando los primeros KB del archivo
+// (sniff) y después se usa tanto para leer como para guardar.
+public class Dialect {
+
+    public static final Dialect DEFAULT = new Dialect(',', '"', StandardCharsets.UTF_8, false, true);
+
+    static final int SAMPLE_BYTES = 64 * 1024;
+    private static final int SAMPLE_LINES = 50;
+    private static final char[] DELIMITERS = {',', ';', '\t', '|'};
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final char delimiter;
+    private final char quote;
+    private final Charset charset;
+    private final boolean bom;
+    private final boolean header;
+    private final boolean quoteAll;
+    private final String lineEnd;
+
+    public Dialect(char delimiter, char quote, Charset charset, boolean bom, boolean header) {
+        this(delimiter, quote, charset, bom, header, "\n");
+    }
+
+    public Dialect(char delimiter, char quote, Charset charset, boolean bom, boolean header, String lineEnd) {
+        this(delimiter, quote, charset, bom, header, lineEnd, false);
+    }
+
+    private Dialect(char delimiter, char quote, Charset charset, boolean bom, boolean header, String lineEnd,
+                    boolean quoteAll) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.charset = charset;
+        this.bom = bom;
+        this.header = header;
+        this.lineEnd = lineEnd;
+        this.quoteAll = quoteAll;
+    }
+
+    public char getDelimiter() { return delimiter; }
+
+    public char getQuote() { return quote; }
+
+    public Charset getCharset() { return charset; }
+
+    // El archivo empieza con el BOM de UTF-8 (se salta al leer y se repite al guardar)
+    public boolean hasBom() { return bom; }
+
+    public int bomLength() { return bom ? UTF8_BOM.length : 0; }
+
+    public byte[] bomBytes() { return bom ? UTF8_BOM.clone() : new byte[0]; }
+
+    public boolean hasHeader() { return header; }
+
+    // "\n" o "\r\n", como termina el primer registro del archivo; al guardar
+    // las filas codificadas de nuevo terminan igual que las copiadas
+    public String getLineEnd() { return lineEnd; }
+
+    // Al guardar, comillas en todos los campos (como CSVWriter) y no solo
+    // en los que las necesitan
+    public boolean isQuoteAll() { return quoteAll; }
+
+    public Dialect withQuoteAll(boolean quoteAll) {
+        return new Dialect(delimiter, quote, charset, bom, header, lineEnd, quoteAll);
+    }
+
+    public static Dialect sniff(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return sniff(in.readNBytes(SAMPLE_BYTES));
+        }
+    }
+
+    // Para flujos (gzip, stdin): lee la muestra y vuelve al principio
+    public static Dialect sniff(InputStream in) throws IOException {
+        in.mark(SAMPLE_BYTES);
+        byte[] sample = in.readNBytes(SAMPLE_BYTES);
+        in.reset();
+        return sniff(sample);
+    }
+
+    public static Dialect sniff(byte[] sample) {
+        boolean bom = sample.length >= 3 && sample[0] == UTF8_BOM[0] && sample[1] == UTF8_BOM[1] && sample[2] == UTF8_BOM[2];
+        int start = bom ? UTF8_BOM.length : 0;
+        Charset charset = bom || isUtf8(sample, start, sample.length == SAMPLE_BYTES)
+                ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+
+        char quote = pickQuote(sample, start);
+        char delimiter = pickDelimiter(sample, start, quote);
+        boolean header = detectHeader(sample, start, delimiter, quote, charset);
+        return new Dialect(delimiter, quote, charset, bom, header, detectLineEnd(sample, start, quote));
+    }
+
+    // El salto del primer registro (fuera de comillas); sin ninguno, "\n"
+    private static String detectLineEnd(byte[] b, int start, char quote) {
+        boolean inQuotes = false;
+        for (int i = start; i < b.length; i++) {
+            if (b[i] == quote) inQuotes = !inQuotes;
+            else if (!inQuotes && b[i] == '\n') return i > start && b[i - 1] == '\r' ? "\r\n" : "\n";
+        }
+        return "\n";
+    }
+
+    // UTF-8 válido; si la muestra se cortó, el último carácter puede quedar a medias
+    private static boolean isUtf8(byte[] b, int i, boolean truncated) {
+        while (i < b.length) {
+            int c = b[i] & 0xff;
+            int extra;
+            if (c < 0x80) extra = 0;
+            else if (c >= 0xC2 && c <= 0xDF) extra = 1;
+            else if (c >= 0xE0 && c <= 0xEF) extra = 2;
+            else if (c >= 0xF0 && c <= 0xF4) extra = 3;
+            else return false;
+            if (i + extra >= b.length) return truncated;
+            for (int k = 1; k <= extra; k++) {
+                if ((b[i + k] & 0xC0) != 0x80) return false;
+            }
+            i += extra + 1;
+        }
+        return true;
+    }
+
+    // Comillas dobles salvo que las simples aparezcan más veces abriendo un campo
+    private static char pickQuote(byte[] b, int start) {
+        int dbl = 0, sgl = 0;
+        for (int i = start; i < b.length; i++) {
+            boolean fieldStart = i == start || b[i - 1] == '\n' || b[i - 1] == ',' || b[i - 1] == ';'
+                    || b[i - 1] == '\t' || b[i - 1] == '|';
+            if (!fieldStart) continue;
+            if (b[i] == '"') dbl++;
+            else if (b[i] == '\'') sgl++;
+        }
+        return sgl > dbl ? '\'' : '"';
+    }
+
+    // El separador es el que aparece la misma cantidad de veces (fuera de
+    // comillas) en más líneas de la muestra; a igual consistencia, el más usado
+    private static char pickDelimiter(byte[] b, int start, char quote) {
+        char best = ',';
+        long bestScore = 0;
+        for (char d : DELIMITERS) {
+            List<Integer> counts = countPerLine(b, start, d, quote);
+            if (counts.isEmpty()) continue;
+            int mode = mode(counts);
+            if (mode == 0) continue;
+            int consistent = 0;
+            for (int n : counts) if (n == mode) consistent++;
+            long score = (long) consistent * 1000 + mode;
+            if (score > bestScore) {
+                bestScore = score;
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    private static List<Integer> countPerLine(byte[] b, int start, char d, char quote) {
+        List<Integer> counts = new ArrayList<>();
+        boolean inQuotes = false;
+        int n = 0;
+        for (int i = start; i < b.length && counts.size() < SAMPLE_LINES; i++) {
+            byte c = b[i];
+            if (c == quote) inQuotes = !inQuotes;
+            else if (!inQuotes && c == d) n++;
+            else if (!inQuotes && c == '\n') {
+                counts.add(n);
+                n = 0;
+            }
+        }
+        return counts;
+    }
+
+    private static int mode(List<Integer> counts) {
+        int best = 0, bestFreq = 0;
+        for (int v : counts) {
+            int freq = 0;
+            for (int w : counts) if (w == v) freq++;
+            if (freq > bestFreq || (freq == bestFreq && v > best)) {
+                best = v;
+                bestFreq = freq;
+            }
+        }
+        return best;
+    }
+
+    // Hay encabezado si en alguna columna la primera fila es texto y el resto
+    // son números. Sin columnas numéricas se asume que hay encabezado (la
+    // primera fila se muestra igual; solo cambia la inferencia de tipos),
+    // salvo que el primer valor de una columna se repita más abajo.
+    private static boolean detectHeader(byte[] b, int start, char delimiter, char quote, Charset charset) {
+        List<String[]> rows = sampleRows(b, start, delimiter, quote, charset);
+        if (rows.size() < 2) return true;
+        String[] first = rows.get(0);
+        boolean numericColumns = false;
+        boolean repeated = false;
+        for (int c = 0; c < first.length; c++) {
+            ColumnType rest = null;
+            for (int r = 1; r < rows.size(); r++) {
+                String[] row = rows.get(r);
+                if (c >= row.length) continue;
+                ColumnType t = ColumnType.of(row[c]);
+                rest = rest == null ? t : rest.widen(t);
+                if (!row[c].isEmpty() && row[c].equals(first[c])) repeated = true;
+            }
+            if (rest == null || rest == ColumnType.TEXT) continue;
+            if (ColumnType.of(first[c]) == ColumnType.TEXT) return true;
+            numericColumns = true;
+        }
+        return !numericColumns && !repeated;
+    }
+
+    // Filas completas de la muestra (la última puede estar cortada y se descarta)
+    private static List<String[]> sampleRows(byte[] b, int start, char delimiter, char quote, Charset charset) {
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        CsvByteParser parser = new CsvByteParser((byte) delimiter, (byte) quote, charset);
+        List<String[]> rows = new ArrayList<>();
+        int pos = start;
+        while (pos < b.length && rows.size() < SAMPLE_LINES) {
+            pos = parser.scan(buf, pos, b.length);
+            if (!parser.isTerminated() && b.length == SAMPLE_BYTES) break;
+            rows.add(parser.toRow(buf));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.csvexcel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columna de texto con pocos valores distintos (país, ciudad): cada fila
+// guarda el código de su valor en un int[] y cada valor distinto se guarda
+// una sola vez. El código 0 es la celda vacía. Un filtro se evalúa una vez
+// por valor distinto y después se compara el código de cada fila (ver
+// matches).
+//
+// Con más de MAX_VALUES valores distintos no conviene: la columna pasa a
+// ser una TextColumn (ver ColumnStore.write).
+public class DictColumn extends Column {
+
+    static final int MAX_VALUES = 1 << 16;
+
+    private int[] codes;
+    private final List<String> values; // values.get(0) = "" (vacía)
+    private final Map<String, Integer> index;
+
+    public DictColumn() {
+        this(new int[0], new ArrayList<>(List.of("")), new HashMap<>(Map.of("", 0)));
+    }
+
+    private DictColumn(int[] codes, List<String> values, Map<String, Integer> index) {
+        this.codes = codes;
+        this.values = values;
+        this.index = index;
+    }
+
+    // Valores distintos (contando la celda vacía)
+    int distinct() { return values.size(); }
+
+    // Código de cada fila; las filas más allá del arreglo están vacías (0)
+    int[] codes() { return codes; }
+
+    // Para cada código, si su valor cumple la condición
+    boolean[] matches(Condition cond) {
+        boolean[] result = new boolean[values.size()];
+        for (int code = 0; code < result.length; code++) result[code] = cond.test(values.get(code));
+        return result;
+    }
+
+    // Se puede escribir sin pasar el límite de valores distintos
+    boolean accepts(String value) {
+        return value == null || index.containsKey(value) || values.size() <= MAX_VALUES;
+    }
+
+    @Override
+    public String get(int row) {
+        return row < codes.length ? values.get(codes[row]) : null;
+    }
+
+    @Override
+    public void set(int row, String value) {
+        if (value == null) value = "";
+        Integer code = index.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            index.put(value, code);
+        }
+        if (row >= codes.length) {
+            if (code == 0) return; // ya está vacía
+            codes = Arrays.copyOf(codes, Math.max(row + 1, Math.max(16, codes.length * 2)));
+        }
+        codes[row] = code;
+    }
+
+    // La misma columna guardada como texto
+    TextColumn toText() {
+        String[] text = new String[codes.length];
+        for (int r = 0; r < text.length; r++) text[r] = values.get(codes[r]);
+        return new TextColumn(text);
+    }
+
+    @Override
+    public Column copy() {
+        return new DictColumn(codes.clone(), new ArrayList<>(values), new HashMap<>(index));
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.csvexcel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Diario de cambios (archivo.csv.journal): cada operación que modifica la
+// hoja se anota en binario antes de guardar el CSV, así un cierre inesperado
+// no pierde ediciones. Al abrir el archivo se vuelven a aplicar las que haya.
+//
+// El archivo se crea recién con el primer cambio: abrir un CSV solo para
+// mirarlo no deja un diario vacío al lado. Si no se puede crear (por ejemplo
+// un directorio de solo lectura) se avisa y se sigue sin diario.
+//
+// Las anotaciones quedan en memoria y un hilo las escribe y sincroniza con
+// el disco cada GROUP_COMMIT_MS (varias ediciones por fsync). Al guardar
+// sobre el CSV el diario se compacta: solo quedan las ediciones hechas
+// después de empezar ese guardado, y si no queda ninguna se borra.
+//
+// Entre el renombrado del CSV y la compactación el encabezado del diario
+// ya no coincide con el archivo: por eso antes de renombrar se anota un
+// registro SAVED con el encabezado del CSV nuevo y la marca del guardado
+// (ver saving). Al abrir, si el encabezado no coincide pero un SAVED sí, se
+// aplican solo los cambios posteriores a su marca.
+//
+// Formato: MAGIC, tamaño, fecha y hash del encabezado del CSV base, y luego
+// registros [largo int][operación y datos][crc32 int]. Un registro cortado
+// al final (el proceso murió escribiéndolo) se descarta.
+public class EditJournal implements Closeable {
+
+    private static final long MAGIC = 0x4353564A524E4C31L; // "CSVJRNL1"
+    private static final int HEADER_BYTES = 8 * 4;
+    private static final long GROUP_COMMIT_MS = 100;
+    // A partir de este tamaño conviene pasar los cambios al CSV
+    static final long COMPACT_BYTES = 64L << 20;
+
+    private static final byte SET_CELL = 1;
+    private static final byte ADD_COLUMN = 2;
+    private static final byte ADD_COLUMN_AT = 3;
+    private static final byte REMOVE_COLUMN = 4;
+    private static final byte DUPLICATE_COLUMN = 5;
+    private static final byte SAVED = 6;
+
+    private final Path path;
+    private FileChannel channel; // null hasta el primer cambio
+    private ByteBuffer baseHeader; // encabezado con el CSV base actual
+    private boolean disabled = false; // no se pudo crear: se sigue sin diario
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(record);
+    private long written = 0; // bytes de registros (sin el encabezado), incluidos los pendientes
+    private int replayed = 0;
+    private volatile String error = null;
+    // Ordena las escrituras al disco; las anotaciones solo toman 'this',
+    // así una edición nunca espera a un fsync
+    private final Object io = new Object();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "diario");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private EditJournal(Path path, FileChannel channel, ByteBuffer baseHeader, long written) {
+        this.path = path;
+        this.channel = channel;
+        this.baseHeader = baseHeader;
+        this.written = written;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, GROUP_COMMIT_MS, GROUP_COMMIT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static Path pathFor(Path csv) {
+        return Paths.get(csv.toString() + ".journal");
+    }
+
+    // Abre el diario del CSV si existe, aplica a la hoja los cambios que tenga
+    // y lo deja anotando los siguientes. Si el CSV cambió desde que se escribió
+    // el diario (y no fue un guardado anotado con SAVED), se aparta como
+    // .journal.old y se empieza uno nuevo (que se crea con el primer cambio).
+    public static EditJournal open(Sheet sheet, Path csv) throws IOException {
+        Path path = pathFor(csv);
+        ByteBuffer base = header(csv);
+        int replayed = 0;
+        long valid = -1;
+        if (Files.isRegularFile(path)) {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+            long from = matchesBase(buf, base) ? 0 : savedMark(buf, base);
+            if (from >= 0) {
+                buf.position(HEADER_BYTES);
+                replayed = replay(buf, sheet, from);
+                valid = buf.position() - HEADER_BYTES;
+                if (from > 0) {
+                    // el CSV se guardó pero el diario no llegó a compactarse
+                    valid = rewrite(path, base, edits(buf.duplicate().position(HEADER_BYTES + (int) from)
+                            .limit(HEADER_BYTES + (int) valid)));
+                }
+            } else {
+                Files.move(path, Paths.get(path + ".old"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        FileChannel ch = null;
+        if (valid > 0) {
+            ch = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            ch.truncate(HEADER_BYTES + valid); // descarta un registro cortado
+            ch.position(HEADER_BYTES + valid);
+        } else {
+            // sin cambios pendientes no hace falta el archivo
+            if (valid == 0) Files.deleteIfExists(path);
+            valid = 0;
+        }
+        EditJournal journal = new EditJournal(path, ch, base, valid);
+        journal.replayed = replayed;
+        sheet.setJournal(journal);
+        return journal;
+    }
+
+    // Cambios recuperados al abrir
+    public int getReplayed() { return replayed; }
+
+    // Bytes de cambios anotados desde el último guardado
+    public synchronized long size() { return written; }
+
+    // Último error al escribir el diario (null si no hubo), una sola vez
+    public String takeError() {
+        String e = error;
+        error = null;
+        return e;
+    }
+
+    // ---- Anotaciones (las llama Sheet) ----
+
+    // 'view' son las filas visibles cuando la celda es una fórmula con un
+    // filtro activo (la fórmula se aplica solo a esas filas); si no, null
+    // y 'row' es la fila dentro de todas las filas
+    synchronized void setCell(int row, int col, String value, int[] view) {
+        try {
+            out.writeByte(SET_CELL);
+            out.writeInt(row);
+            out.writeInt(col);
+            writeString(value);
+            out.writeInt(view == null ? -1 : view.length);
+            if (view != null) for (int v : view) out.writeInt(v);
+            append();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // no pasa escribiendo en memoria
+        }
+    }
+
+    void addColumn() { column(ADD_COLUMN, 0); }
+
+    void addColumnAt(int index) { column(ADD_COLUMN_AT, index); }
+
+    void removeColumnAt(int index) { column(REMOVE_COLUMN, index); }
+
+    void duplicateColumnAt(int index) { column(DUPLICATE_COLUMN, index); }
+
+    private synchronized void column(byte op, int index) {
+        try {
+            out.writeByte(op);
+            out.writeInt(index);
+            append();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Pasa el registro armado a los pendientes con su largo y su crc
+    private synchronized void append() throws IOException {
+        byte[] body = record.toByteArray();
+        record.reset();
+        if (disabled) return;
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        DataOutputStream p = new DataOutputStream(pending);
+        p.writeInt(body.length);
+        p.write(body);
+        p.writeInt((int) crc.getValue());
+        written += 8 + body.length;
+    }
+
+    // ---- Escritura al disco ----
+
+    // Escribe los pendientes y sincroniza (un fsync por tanda)
+    public void flush() throws IOException {
+        synchronized (io) {
+            if (writePending()) channel.force(false);
+        }
+    }
+
+    private synchronized boolean writePending() throws IOException {
+        if (pending.size() == 0) return false;
+        if (channel == null) create();
+        ByteBuffer buf = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        while (buf.hasRemaining()) channel.write(buf);
+        return true;
+    }
+
+    // Crea el archivo con el primer cambio; si falla se descartan las
+    // anotaciones y no se anota nada más
+    private void create() throws IOException {
+        try {
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE, StandardOpenOption.READ);
+            try {
+                ByteBuffer head = baseHeader.duplicate();
+                while (head.hasRemaining()) ch.write(head);
+            } catch (IOException e) {
+                ch.close();
+                Files.deleteIfExists(path);
+                throw e;
+            }
+            channel = ch;
+        } catch (IOException e) {
+            disabled = true;
+            pending.reset();
+            written = 0;
+            throw new IOException("no se pudo crear " + path.getFileName() + " (se sigue sin diario): " + e.getMessage(), e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            error = "❌ Error al escribir el diario: " + e.getMessage();
+        }
+    }
+
+    // Marca del diario: hasta dónde llegan los cambios incluidos en un guardado
+    public synchronized long mark() {
+        return written;
+    }
+
+    // Antes de reemplazar el CSV por 'saved' (ya escrito y sincronizado):
+    // anota en el disco que ese archivo tiene los cambios hasta 'mark'. Si
+    // el programa muere antes de compacted, al abrir se siguen desde ahí
+    // (si no se puede anotar se avisa con takeError y el guardado sigue)
+    public void saving(long mark, Path saved) {
+        synchronized (io) {
+            try {
+                synchronized (this) {
+                    if (disabled || (channel == null && pending.size() == 0)) return; // nada que conservar
+                    out.writeByte(SAVED);
+                    ByteBuffer head = header(saved);
+                    while (head.hasRemaining()) out.writeByte(head.get());
+                    out.writeLong(mark);
+                    append();
+                    writePending();
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = "❌ Error al escribir el diario: " + e.getMessage();
+            }
+        }
+    }
+
+    // El CSV se guardó con los cambios hasta 'mark': el diario pasa a tener
+    // como base el archivo nuevo y solo conserva los cambios posteriores
+    // (sin ninguno, el archivo se borra hasta el próximo cambio)
+    public void compacted(long mark, Path csv) throws IOException {
+        synchronized (io) {
+            synchronized (this) {
+                writePending();
+                baseHeader = header(csv);
+                if (channel == null) { // todavía no hubo cambios en el disco
+                    written = Math.max(0, written - mark);
+                    return;
+                }
+                long tail = written - mark;
+                ByteBuffer rest = ByteBuffer.allocate((int) tail);
+                while (rest.hasRemaining() && channel.read(rest, HEADER_BYTES + mark + rest.position()) >= 0) { }
+                rest.flip();
+
+                channel.close();
+                channel = null;
+                written = rewrite(path, baseHeader, edits(rest));
+                if (written > 0) {
+                    channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+                    channel.position(channel.size());
+                }
+            }
+        }
+    }
+
+    // Deja en 'path' el encabezado y los registros, o borra el archivo si no
+    // hay registros. Devuelve los bytes de registros escritos
+    private static long rewrite(Path path, ByteBuffer header, ByteBuffer records) throws IOException {
+        long size = records.remaining();
+        if (size == 0) {
+            Files.deleteIfExists(path);
+            return 0;
+        }
+        Path tmp = Paths.get(path + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer head = header.duplicate();
+            while (head.hasRemaining()) ch.write(head);
+            while (records.hasRemaining()) ch.write(records);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return size;
+    }
+
+    // Los registros completos de 'records' sin los SAVED (solo las ediciones)
+    private static ByteBuffer edits(ByteBuffer records) {
+        ByteBuffer kept = ByteBuffer.allocate(records.remaining());
+        while (records.remaining() >= 8) {
+            int len = records.getInt(records.position());
+            if (len <= 0 || len > records.remaining() - 8) break;
+            int size = 8 + len;
+            if (records.get(records.position() + 4) != SAVED) kept.put(records.slice(records.position(), size));
+            records.position(records.position() + size);
+        }
+        return kept.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        synchronized (io) {
+            flush();
+            if (channel != null) channel.close();
+        }
+    }
+
+    // ---- Lectura ----
+
+    // Se arma al abrir (y después de cada guardado), no al crear el archivo:
+    // los cambios anotados son sobre el CSV que se cargó
+    private static ByteBuffer header(Path csv) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+        head.putLong(MAGIC);
+        head.putLong(Files.size(csv));
+        head.putLong(Files.getLastModifiedTime(csv).toMillis());
+        head.putLong(RowIndex.headerHash(csv));
+        head.flip();
+        return head.asReadOnlyBuffer();
+    }
+
+    private static boolean matchesBase(ByteBuffer buf, ByteBuffer base) {
+        return buf.remaining() >= HEADER_BYTES && buf.slice(0, HEADER_BYTES).equals(base);
+    }
+
+    // Marca del último SAVED cuyo CSV es 'base' (-1 si no hay ninguno)
+    private static long savedMark(ByteBuffer buf, ByteBuffer base) {
+        if (buf.remaining() < HEADER_BYTES || buf.getLong(0) != MAGIC) return -1;
+        long found = -1;
+        int pos = HEADER_BYTES;
+        while (buf.limit() - pos >= 8) {
+            int len = buf.getInt(pos);
+            if (len <= 0 || len > buf.limit() - pos - 8) break;
+            ByteBuffer body = buf.slice(pos + 4, len);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buf.getInt(pos + 4 + len)) break;
+            if (body.get(0) == SAVED && len == 1 + HEADER_BYTES + 8 && body.slice(1, HEADER_BYTES).equals(base)) {
+                found = body.getLong(1 + HEADER_BYTES);
+            }
+            pos += 8 + len;
+        }
+        return found;
+    }
+
+    // Aplica los registros completos que empiezan desde 'from' (los
+    // anteriores ya están en el CSV); deja la posición después del último válido
+    private static int replay(ByteBuffer buf, Sheet sheet, long from) {
+        int count = 0;
+        while (buf.remaining() >= 8) {
+            int start = buf.position();
+            int len = buf.getInt();
+            if (len <= 0 || len > buf.remaining() - 4) {
+                buf.position(start);
+                break;
+            }
+            ByteBuffer body = buf.slice(buf.position(), len);
+            buf.position(buf.position() + len);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buf.getInt()) {
+                buf.position(start);
+                break;
+            }
+            if (start - HEADER_BYTES >= from && apply(body, sheet)) count++;
+        }
+        return count;
+    }
+
+    // Devuelve false si el registro no es una edición (SAVED)
+    private static boolean apply(ByteBuffer body, Sheet sheet) {
+        byte op = body.get();
+        switch (op) {
+            case SET_CELL: {
+                int row = body.getInt();
+                int col = body.getInt();
+                byte[] bytes = new byte[body.getInt()];
+                body.get(bytes);
+                int n = body.getInt();
+                int[] view = null;
+                if (n >= 0) {
+                    view = new int[n];
+                    for (int i = 0; i < n; i++) view[i] = body.getInt();
+                }
+                sheet.replaySetCell(row, col, new String(bytes, StandardCharsets.UTF_8), view);
+                break;
+            }
+            case ADD_COLUMN: sheet.addColumn(); break;
+            case ADD_COLUMN_AT: sheet.addColumnAt(body.getInt()); break;
+            case REMOVE_COLUMN: sheet.removeColumnAt(body.getInt()); break;
+            case DUPLICATE_COLUMN: sheet.duplicateColumnAt(body.getInt()); break;
+            case SAVED: return false;
+            default: throw new IllegalStateException("Operación desconocida en el diario: " + op);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.csvexcel;
+
+// Expresión aritmética (+, -, *, /, paréntesis) compilada a un árbol para
+// evaluarla muchas veces sin volver a parsear el texto.
+// Las referencias (C, C12, AA3) se resuelven en cada evaluación con Cells;
+// con una fila suelta una celda vacía vale 0 y una que no es un número hace
+// fallar la evaluación (igual que en la hoja, donde da #ERR).
+public class Expression {
+
+    // Valor de la celda referenciada: 'row' es el número escrito en la
+    // fórmula (1 = primera fila) o 0 si la referencia no tiene número
+    public interface Cells {
+        double value(int col, int row);
+    }
+
+    private interface Node {
+        double eval(Cells cells);
+    }
+
+    private final Node root;
+
+    private Expression(Node root) {
+        this.root = root;
+    }
+
+    // Compila una fórmula con referencias ("=C*2", "C*2" o "=A1+B1")
+    public static Expression compile(String formula) {
+        if (formula.startsWith("=")) formula = formula.substring(1);
+        return new Expression(new Parser(formula.replaceAll("\\s+", "")).parse());
+    }
+
+    public double eval(Cells cells) {
+        return root.eval(cells);
+    }
+
+    // Referencias sin número de fila sobre los valores de una fila
+    public double eval(String[] row) {
+        return root.eval((col, r) -> {
+            if (r != 0) throw new IllegalArgumentException("Referencia a otra fila");
+            return cellValue(col < row.length ? row[col] : null);
+        });
+    }
+
+    // Valor de una celda como texto: vacía = 0
+    public static double cellValue(String v) {
+        if (v == null || v.isEmpty()) return 0;
+        if (!isPlainNumber(v)) throw new NumberFormatException("No es un número: " + v);
+        return Double.parseDouble(v);
+    }
+
+    // Mismo criterio que la hoja: -?\d+(\.\d+)? (en Java \d son solo los
+    // dígitos ASCII; "٣٤" no es un número para Double.parseDouble)
+    public static boolean isPlainNumber(String v) {
+        if (v.isEmpty()) return false;
+        int i = v.charAt(0) == '-' ? 1 : 0;
+        int digits = 0;
+        while (i < v.length() && isDigit(v.charAt(i))) { i++; digits++; }
+        if (digits == 0) return false;
+        if (i == v.length()) return true;
+        if (v.charAt(i) != '.') return false;
+        i++;
+        int decimals = 0;
+        while (i < v.length() && isDigit(v.charAt(i))) { i++; decimals++; }
+        return decimals > 0 && i == v.length();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Mismo evaluador recursivo que usaba Sheet.evalMath, pero armando nodos
+    private static class Parser {
+        private final String expr;
+        private int pos = -1, ch;
+
+        Parser(String expr) {
+            this.expr = expr;
+        }
+
+        void nextChar() {
+            ch = (++pos < expr.length()) ? expr.charAt(pos) : -1;
+        }
+
+        boolean eat(int charToEat) {
+            while (ch == ' ') nextChar();
+            if (ch == charToEat) {
+                nextChar();
+                return true;
+            }
+            return false;
+        }
+
+        Node parse() {
+            nextChar();
+            Node x = parseExpression();
+            if (pos < expr.length()) throw new RuntimeException("Unexpected: " + (char) ch);
+            return x;
+        }
+
+        Node parseExpression() {
+            Node x = parseTerm();
+            for (;;) {
+                Node a = x;
+                if (eat('+')) {
+                    Node b = parseTerm();
+                    x = cells -> a.eval(cells) + b.eval(cells);
+                } else if (eat('-')) {
+                    Node b = parseTerm();
+                    x = cells -> a.eval(cells) - b.eval(cells);
+                } else return x;
+            }
+        }
+
+        Node parseTerm() {
+            Node x = parseFactor();
+            for (;;) {
+                Node a = x;
+                if (eat('*')) {
+                    Node b = parseFactor();
+                    x = cells -> a.eval(cells) * b.eval(cells);
+                } else if (eat('/')) {
+                    Node b = parseFactor();
+                    x = cells -> a.eval(cells) / b.eval(cells);
+                } else return x;
+            }
+        }
+
+        Node parseFactor() {
+            if (eat('+')) return parseFactor();
+            if (eat('-')) {
+                Node a = parseFactor();
+                return cells -> -a.eval(cells);
+            }
+
+            int startPos = this.pos;
+            if (eat('(')) {
+                Node x = parseExpression();
+                eat(')');
+                return x;
+            } else if ((ch >= '0' && ch <= '9') || ch == '.') {
+                while ((ch >= '0' && ch <= '9') || ch == '.') nextChar();
+                double x = Double.parseDouble(expr.substring(startPos, this.pos));
+                return cells -> x;
+            } else if (ch >= 'A' && ch <= 'Z') {
+                int col = 0;
+                while (ch >= 'A' && ch <= 'Z') {
+                    col = col * 26 + (ch - 'A' + 1);
+                    nextChar();
+                }
+                int row = 0;
+                while (ch >= '0' && ch <= '9') {
+                    row = row * 10 + (ch - '0');
+                    nextChar();
+                }
+                int index = col - 1;
+                int refRow = row;
+                return cells -> cells.value(index, refRow);
+            } else {
+                throw new RuntimeException("Unexpected: " + (char) ch);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Sigue un CSV que va creciendo (por ejemplo un log): en cada poll() lee
+// solo los bytes agregados desde el último offset conocido y agrega a la
+// hoja los registros completos. Un registro a medio escribir (sin salto de
+// línea final) se deja para la próxima vez, también al cargar (ver open).
+public class FileFollower {
+
+    private static final int READ_SIZE = 1 << 20;
+
+    private final Sheet sheet;
+    private final Path file;
+    private final CsvByteParser parser;
+    private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+    private long offset;
+    // el último registro terminó en \r: si llega un \n es parte del mismo fin de línea
+    private boolean skipLF = false;
+
+    private FileFollower(Sheet sheet, Path file, long offset) {
+        this.sheet = sheet;
+        this.file = file;
+        this.parser = new CsvByteParser(sheet.getDialect());
+        this.offset = offset;
+    }
+
+    // Carga el archivo hasta el último registro completo y lo sigue desde
+    // ahí: lo que se agregue después de la carga (o el resto de un registro
+    // a medio escribir) llega con poll()
+    public static FileFollower open(Path file, LoadProgress progress) throws IOException {
+        Dialect dialect = Dialect.sniff(file);
+        Sheet sheet = new Sheet();
+        sheet.setDialect(dialect);
+        FileFollower follower = new FileFollower(sheet, file, dialect.bomLength());
+        long start = System.nanoTime();
+        long count = follower.read(true, progress, start);
+        sheet.finishLoad();
+        sheet.setSource(file, null);
+        if (progress != null) progress.update(count, CsvReader.rowsPerSecond(count, start));
+        return follower;
+    }
+
+    public Sheet getSheet() { return sheet; }
+
+    // Agrega las filas nuevas y devuelve cuántas fueron
+    public int poll() throws IOException {
+        return (int) read(false, null, 0);
+    }
+
+    // Lee desde 'offset' los registros completos; al cargar van con
+    // appendRow (sin filtros ni tipos, se arman al final)
+    private long read(boolean loading, LoadProgress progress, long start) throws IOException {
+        long added = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < offset) {
+                // el archivo se truncó o se reemplazó: se sigue desde su final
+                offset = size;
+                skipLF = false;
+                return 0;
+            }
+            int window = READ_SIZE;
+            while (offset < size) {
+                int len = (int) Math.min(size - offset, window);
+                if (buf.capacity() < len) buf = ByteBuffer.allocate(len);
+                buf.clear().limit(len);
+                while (buf.hasRemaining() && ch.read(buf, offset + buf.position()) >= 0) { }
+                len = buf.position();
+
+                int pos = 0;
+                if (skipLF && len > 0) {
+                    if (buf.get(0) == '\n') pos = 1;
+                    skipLF = false;
+                }
+                int done = pos;
+                while (pos < len) {
+                    int next = parser.scan(buf, pos, len);
+                    if (!parser.isTerminated()) break;
+                    if (loading) sheet.appendRow(parser.toRow(buf));
+                    else sheet.addRow(parser.toRow(buf));
+                    added++;
+                    if (next == len && buf.get(len - 1) == '\r') skipLF = true;
+                    pos = next;
+                    done = next;
+                }
+                offset += done;
+                if (progress != null) progress.update(added, CsvReader.rowsPerSecond(added, start));
+
+                if (done == 0) {
+                    // registro incompleto: si no entró entero en la ventana se
+                    // lee una más grande, si no se espera a que lo termine el escritor
+                    if (len < window || window >= Integer.MAX_VALUE / 2) break;
+                    window *= 2;
+                }
+            }
+        }
+        return added;
+    }
+}
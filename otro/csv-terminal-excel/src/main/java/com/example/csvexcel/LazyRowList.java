@@ -0,0 +1,95 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Lista de filas que lee el CSV bajo demanda usando un RowIndex.
+// Las filas se decodifican por bloques y se guardan en un caché LRU acotado;
+// las filas editadas (set) y las agregadas (add) quedan en memoria.
+public class LazyRowList extends OverlayRowList {
+
+    static final int BLOCK_ROWS = 1024;
+    static final int MAX_BLOCKS = 64;
+
+    private FileChannel channel;
+    private RowIndex index;
+    private final Dialect dialect;
+
+    private final LinkedHashMap<Integer, String[][]> cache =
+            new LinkedHashMap<>(MAX_BLOCKS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> eldest) {
+                    return size() > MAX_BLOCKS;
+                }
+            };
+
+    public LazyRowList(FileChannel channel, RowIndex index, Dialect dialect) {
+        this.channel = channel;
+        this.index = index;
+        this.dialect = dialect;
+    }
+
+    // Copia que comparte el archivo y el índice pero no las ediciones
+    @Override
+    public LazyRowList snapshot() {
+        return copyOverlayTo(new LazyRowList(channel, index, dialect));
+    }
+
+    // Pasa a leer de un archivo nuevo (por ejemplo después de guardar).
+    // Solo se conservan en memoria las filas marcadas en 'keep' y las que
+    // quedaron fuera del archivo nuevo; el resto ya está en él.
+    public void rebase(Path path, RowIndex newIndex, BitSet keep) throws IOException {
+        rebaseOverlay(newIndex.getRowCount(), keep);
+
+        // la copia usada para guardar ya terminó, así que el canal anterior se cierra
+        FileChannel old = channel;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        old.close();
+        index = newIndex;
+        cache.clear();
+    }
+
+    @Override
+    protected int baseSize() {
+        return index.getRowCount();
+    }
+
+    @Override
+    protected String[] readRow(int row) {
+        String[][] block = cache.get(row / BLOCK_ROWS);
+        if (block == null) {
+            block = readBlock(row / BLOCK_ROWS);
+            cache.put(row / BLOCK_ROWS, block);
+        }
+        return block[row % BLOCK_ROWS];
+    }
+
+    private String[][] readBlock(int block) {
+        int first = block * BLOCK_ROWS;
+        int last = Math.min(first + BLOCK_ROWS, index.getRowCount());
+        long from = index.offset(first);
+        long to = index.offset(last);
+        String[][] rows = new String[last - first][];
+        try {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            CsvByteParser parser = new CsvByteParser(dialect);
+            int limit = buf.limit();
+            int pos = 0;
+            for (int i = 0; i < rows.length; i++) {
+                pos = parser.scan(buf, pos, limit);
+                rows[i] = pad(parser.toRow(buf), index.getColCount());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+}
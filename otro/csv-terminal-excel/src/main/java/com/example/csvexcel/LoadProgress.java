@@ -0,0 +1,7 @@
+package com.example.csvexcel;
+
+// Recibe el avance de la carga: filas leídas y velocidad en filas por segundo
+@FunctionalInterface
+public interface LoadProgress {
+    void update(long rows, double rowsPerSecond);
+}
@@ -0,0 +1,92 @@
+package com.example.csvexcel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Columna numérica: el valor de cada fila en un double[] (NaN = vacía) en
+// lugar de un String, así ocupa 8 bytes por fila y filtros y fórmulas leen
+// el arreglo directamente (ver Sheet.numericColumn).
+//
+// El texto se vuelve a armar al leer la celda. Solo se guarda aparte cuando
+// no sale igual del número: en 'decimalForm' las filas escritas como "4.0"
+// (lo que devuelven las fórmulas) y en 'texts' el resto ("007", "1.50",
+// números de más de 15 cifras o celdas que no son números, por ejemplo el
+// encabezado). 'texts' no existe hasta que hace falta.
+public class NumericColumn extends Column {
+
+    private double[] values;
+    private final BitSet decimalForm;
+    private String[] texts;
+
+    public NumericColumn() {
+        this(new double[0], new BitSet(), null);
+    }
+
+    private NumericColumn(double[] values, BitSet decimalForm, String[] texts) {
+        this.values = values;
+        this.decimalForm = decimalForm;
+        this.texts = texts;
+    }
+
+    // Valores por fila (NaN = vacía o no es un número); las filas más allá
+    // del arreglo están vacías
+    double[] values() { return values; }
+
+    @Override
+    public String get(int row) {
+        if (texts != null && row < texts.length && texts[row] != null) return texts[row];
+        if (row >= values.length || Double.isNaN(values[row])) return null;
+        double v = values[row];
+        return decimalForm.get(row) ? Double.toString(v) : format(v);
+    }
+
+    @Override
+    public void set(int row, String value) {
+        if (value == null || value.isEmpty()) {
+            if (row < values.length) values[row] = Double.NaN;
+            decimalForm.clear(row);
+            setText(row, null);
+            return;
+        }
+        if (row >= values.length) {
+            int old = values.length;
+            values = Arrays.copyOf(values, Math.max(row + 1, Math.max(16, old * 2)));
+            Arrays.fill(values, old, values.length, Double.NaN);
+        }
+        if (!Expression.isPlainNumber(value)) {
+            values[row] = Double.NaN;
+            decimalForm.clear(row);
+            setText(row, value);
+            return;
+        }
+        double v = Double.parseDouble(value);
+        values[row] = v;
+        boolean plain = value.equals(format(v));
+        boolean decimal = !plain && value.equals(Double.toString(v));
+        decimalForm.set(row, decimal);
+        setText(row, plain || decimal ? null : value);
+    }
+
+    private void setText(int row, String text) {
+        if (texts == null) {
+            if (text == null) return;
+            texts = new String[values.length];
+        }
+        if (row >= texts.length) {
+            if (text == null) return;
+            texts = Arrays.copyOf(texts, values.length);
+        }
+        texts[row] = text;
+    }
+
+    // Enteros sin decimales ("42"); el resto como Double.toString
+    private static String format(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15 && !(v == 0 && 1 / v < 0)) return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    @Override
+    public Column copy() {
+        return new NumericColumn(values.clone(), (BitSet) decimalForm.clone(), texts == null ? null : texts.clone());
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.csvexcel;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columna de texto fuera del heap: los bytes (UTF-8) de las celdas van
+// seguidos en bloques directos de CHUNK_BYTES y en el heap queda solo un
+// long por fila con la posición y el largo. Con cientos de millones de
+// celdas el recolector no tiene que recorrer un String por cada una, y la
+// celda se decodifica recién al leerla. Los filtros prueban los bytes sin
+// armar el String (ver test).
+//
+// Las celdas reescritas dejan su valor anterior en el bloque; cuando lo
+// que sobra pasa de la mitad se copian las celdas vivas a bloques nuevos.
+//
+// La memoria directa tiene su propio límite (-XX:MaxDirectMemorySize, que
+// por defecto es igual a -Xmx). Si se agota, los bloques siguientes se
+// crean en el heap: la columna sigue funcionando igual, solo que esos
+// bloques vuelven a contar para el recolector.
+public class OffHeapColumn extends Column {
+
+    static final int CHUNK_BYTES = 4 << 20;
+    private static final int LENGTH_BITS = 24; // CHUNK_BYTES entra en 24 bits
+    private static final long LARGE = -1; // celda más grande que un bloque: va en 'large'
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long[] slots = new long[0]; // (posición << LENGTH_BITS) | largo; 0 = vacía
+    private int end = CHUNK_BYTES; // lo escrito en el último bloque
+    private long written = 0;
+    private long garbage = 0;
+    private Map<Integer, String> large = null;
+    // No quedó memoria directa: no se vuelve a intentar (cada intento
+    // fallido fuerza recolecciones y esperas antes de fallar)
+    private static volatile boolean directExhausted = false;
+
+    // Bytes fuera del heap de todo el proceso (bloques de todas las columnas
+    // y los búferes directos de lectura)
+    static long directBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    @Override
+    public String get(int row) {
+        long slot = row < slots.length ? slots[row] : 0;
+        if (slot == 0) return null;
+        if (slot == LARGE) return large.get(row);
+        return new String(bytes(slot), StandardCharsets.UTF_8);
+    }
+
+    private byte[] bytes(long slot) {
+        byte[] bytes = new byte[length(slot)];
+        long pos = slot >>> LENGTH_BITS;
+        chunks.get((int) (pos / CHUNK_BYTES)).get((int) (pos % CHUNK_BYTES), bytes);
+        return bytes;
+    }
+
+    // Prueba la condición sobre los bytes de la celda: 1 cumple, 0 no
+    // cumple, -1 hay que probarla con el texto (Condition.testBytes)
+    int test(int row, Condition cond) {
+        long slot = row < slots.length ? slots[row] : 0;
+        if (slot == 0 || slot == LARGE) return -1;
+        long pos = slot >>> LENGTH_BITS;
+        int start = (int) (pos % CHUNK_BYTES);
+        return cond.testBytes(chunks.get((int) (pos / CHUNK_BYTES)), start, start + length(slot));
+    }
+
+    @Override
+    public void set(int row, String value) {
+        if (row >= slots.length) {
+            if (value == null || value.isEmpty()) return; // ya está vacía
+            slots = Arrays.copyOf(slots, Math.max(row + 1, Math.max(16, slots.length * 2)));
+        }
+        long old = slots[row];
+        if (old == LARGE) large.remove(row);
+        else garbage += length(old);
+        slots[row] = value == null || value.isEmpty() ? 0 : store(row, value);
+        if (garbage > CHUNK_BYTES && garbage > written / 2) compact();
+    }
+
+    private long store(int row, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= CHUNK_BYTES) return append(bytes);
+        if (large == null) large = new HashMap<>();
+        large.put(row, value);
+        return LARGE;
+    }
+
+    private long append(byte[] bytes) {
+        if (end + bytes.length > CHUNK_BYTES) {
+            chunks.add(newChunk());
+            end = 0;
+        }
+        long pos = (long) (chunks.size() - 1) * CHUNK_BYTES + end;
+        chunks.get(chunks.size() - 1).put(end, bytes);
+        end += bytes.length;
+        written += bytes.length;
+        return pos << LENGTH_BITS | bytes.length;
+    }
+
+    private static ByteBuffer newChunk() {
+        if (!directExhausted) {
+            try {
+                return ByteBuffer.allocateDirect(CHUNK_BYTES);
+            } catch (OutOfMemoryError e) {
+                directExhausted = true; // límite de memoria directa, no del heap
+            }
+        }
+        return ByteBuffer.allocate(CHUNK_BYTES);
+    }
+
+    private static int length(long slot) {
+        return (int) (slot & ((1 << LENGTH_BITS) - 1));
+    }
+
+    // Pasa las celdas vivas a bloques nuevos; los viejos los libera el recolector
+    private void compact() {
+        OffHeapColumn fresh = (OffHeapColumn) copy();
+        chunks.clear();
+        chunks.addAll(fresh.chunks);
+        slots = fresh.slots;
+        end = fresh.end;
+        written = fresh.written;
+        garbage = 0;
+        large = fresh.large;
+    }
+
+    @Override
+    public Column copy() {
+        OffHeapColumn copy = new OffHeapColumn();
+        copy.slots = new long[slots.length];
+        for (int row = 0; row < slots.length; row++) {
+            long slot = slots[row];
+            if (slot == 0) continue;
+            if (slot == LARGE) {
+                copy.slots[row] = copy.store(row, large.get(row));
+                continue;
+            }
+            copy.slots[row] = copy.append(bytes(slot));
+        }
+        return copy;
+    }
+}
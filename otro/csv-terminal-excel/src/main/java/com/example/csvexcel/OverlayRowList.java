@@ -0,0 +1,92 @@
+package com.example.csvexcel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Base de las listas de filas que se leen de un archivo bajo demanda.
+// Las filas del archivo no se modifican: las reemplazadas (set) y las
+// agregadas al final (add) quedan en memoria por encima del archivo.
+public abstract class OverlayRowList extends AbstractList<String[]> {
+
+    protected final Map<Integer, String[]> edited = new HashMap<>();
+    protected final List<String[]> appended = new ArrayList<>();
+
+    // Filas que hay en el archivo
+    protected abstract int baseSize();
+
+    // Lee una fila del archivo (row < baseSize())
+    protected abstract String[] readRow(int row);
+
+    // Copia que comparte el archivo pero no las ediciones
+    public abstract OverlayRowList snapshot();
+
+    protected <T extends OverlayRowList> T copyOverlayTo(T copy) {
+        copy.edited.putAll(edited);
+        copy.appended.addAll(appended);
+        return copy;
+    }
+
+    // Antes de pasar a un archivo nuevo con 'newBaseSize' filas: quedan en
+    // memoria solo las filas marcadas en 'keep' y las que no entran en él
+    protected void rebaseOverlay(int newBaseSize, BitSet keep) {
+        Map<Integer, String[]> keptRows = new HashMap<>();
+        for (int r = keep.nextSetBit(0); r >= 0 && r < Math.min(size(), newBaseSize); r = keep.nextSetBit(r + 1)) {
+            keptRows.put(r, get(r));
+        }
+        List<String[]> extra = new ArrayList<>();
+        for (int r = newBaseSize; r < size(); r++) extra.add(get(r));
+        edited.clear();
+        edited.putAll(keptRows);
+        appended.clear();
+        appended.addAll(extra);
+    }
+
+    @Override
+    public String[] get(int row) {
+        if (row < 0 || row >= size()) throw new IndexOutOfBoundsException("Fila " + row);
+        if (row >= baseSize()) return appended.get(row - baseSize());
+        String[] e = edited.get(row);
+        if (e != null) return e;
+        return readRow(row);
+    }
+
+    // Una celda (null si la fila no llega a esa columna); las subclases
+    // pueden leerla sin armar toda la fila
+    public String cell(int row, int col) {
+        String[] r = get(row);
+        return col >= 0 && col < r.length ? r[col] : null;
+    }
+
+    @Override
+    public String[] set(int row, String[] value) {
+        String[] old = get(row);
+        if (row >= baseSize()) appended.set(row - baseSize(), value);
+        else edited.put(row, value);
+        return old;
+    }
+
+    @Override
+    public void add(int row, String[] value) {
+        if (row != size()) throw new UnsupportedOperationException("Solo se puede agregar al final");
+        appended.add(value);
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return baseSize() + appended.size();
+    }
+
+    // Rellena filas cortas con "" hasta 'cols', igual que la carga completa
+    protected static String[] pad(String[] row, int cols) {
+        if (row.length >= cols) return row;
+        String[] newRow = new String[cols];
+        System.arraycopy(row, 0, newRow, 0, row.length);
+        for (int i = row.length; i < cols; i++) newRow[i] = "";
+        return newRow;
+    }
+}
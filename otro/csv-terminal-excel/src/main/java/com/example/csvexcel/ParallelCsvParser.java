@@ -0,0 +1,196 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Parser para archivos grandes: mapea el archivo en memoria, lo divide en
+// bloques que terminan en un fin de registro real (respetando comillas) y
+// parsea los bloques en paralelo. Las filas se agregan a la hoja en orden.
+public class ParallelCsvParser {
+
+    static final int DEFAULT_CHUNK_SIZE = 32 << 20; // 32 MB
+    // Al armar las filas los bloques son más chicos: las filas parseadas que
+    // esperan su turno ocupan en el heap varias veces lo que el bloque
+    static final int ROWS_CHUNK_SIZE = 8 << 20;
+
+    public static Sheet parse(Path file, Dialect dialect, LoadProgress progress) throws IOException {
+        return parse(file, dialect, ROWS_CHUNK_SIZE, null, progress);
+    }
+
+    // Solo las columnas y filas de 'selection' (--cols, --where)
+    public static Sheet parse(Path file, Dialect dialect, RowSelection selection, LoadProgress progress) throws IOException {
+        return parse(file, dialect, ROWS_CHUNK_SIZE, selection, progress);
+    }
+
+    static Sheet parse(Path file, int chunkSize, LoadProgress progress) throws IOException {
+        return parse(file, Dialect.sniff(file), chunkSize, null, progress);
+    }
+
+    static Sheet parse(Path file, Dialect dialect, int chunkSize, RowSelection selection, LoadProgress progress) throws IOException {
+        long start = System.nanoTime();
+        Sheet sheet = new Sheet();
+        sheet.setDialect(dialect);
+        LongBuffer offsets = parseChunks(file, dialect, chunkSize, selection, (rows, skipped, end) -> {
+            for (String[] row : rows) sheet.appendRow(row);
+            sheet.addSkippedRows(skipped);
+            int count = sheet.getRowCount();
+            if (progress != null) progress.update(count, CsvReader.rowsPerSecond(count, start));
+        });
+        sheet.finishLoad();
+        // con columnas o filas de menos no se puede guardar sobre el archivo
+        if (selection == null) sheet.setSource(file, new RowIndex(offsets, sheet.getColCount()));
+        return sheet;
+    }
+
+    // Recibe las filas de cada bloque en el orden del archivo; 'end' es el
+    // offset donde termina el bloque
+    interface ChunkSink {
+        void accept(List<String[]> rows, int skipped, long end) throws IOException;
+    }
+
+    // Parsea los bloques en paralelo y los entrega a 'sink' en orden.
+    // Devuelve dónde empieza cada fila entregada (y al final el tamaño del
+    // archivo), para poder guardar de forma incremental
+    static LongBuffer parseChunks(Path file, Dialect dialect, int chunkSize, RowSelection selection,
+                                  ChunkSink sink) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long[] bounds = findBoundaries(ch, dialect.bomLength(), size, chunkSize, (byte) dialect.getQuote(), pool);
+
+            // Solo unos bloques por delante del que se entrega: las filas ya
+            // parseadas esperan como String en el heap hasta pasar a la hoja
+            int chunks = bounds.length - 1;
+            int inFlight = pool.getParallelism() + 1;
+            List<ForkJoinTask<Parsed>> tasks = new ArrayList<>();
+            long[] offsets = new long[1024];
+            int count = 0;
+            try {
+                for (int k = 0; k < chunks; k++) {
+                    while (tasks.size() < chunks && tasks.size() <= k + inFlight) {
+                        long from = bounds[tasks.size()];
+                        long to = bounds[tasks.size() + 1];
+                        tasks.add(pool.submit(() -> parseRange(ch, from, to, dialect, selection)));
+                    }
+                    Parsed parsed = tasks.get(k).join();
+                    tasks.set(k, null);
+                    if (count + parsed.rows.size() + 1 > offsets.length) {
+                        offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, count + parsed.rows.size() + 1));
+                    }
+                    System.arraycopy(parsed.starts, 0, offsets, count, parsed.rows.size());
+                    count += parsed.rows.size();
+                    sink.accept(parsed.rows, parsed.skipped, bounds[k + 1]);
+                }
+            } finally {
+                // si 'sink' cortó la carga no se parsea el resto
+                for (ForkJoinTask<Parsed> task : tasks) {
+                    if (task != null) task.cancel(false);
+                }
+            }
+            offsets[count] = size;
+            return LongBuffer.wrap(offsets, 0, count + 1).slice();
+        }
+    }
+
+    // Calcula los límites de cada bloque a partir de 'start' (después del BOM).
+    // Primero cuenta las comillas de cada bloque en paralelo; con la paridad
+    // acumulada se sabe si el inicio de un bloque cae dentro de un campo entre
+    // comillas, y el límite real es el primer '\n' que queda fuera de comillas.
+    static long[] findBoundaries(FileChannel ch, long start, long size, int chunkSize, byte quote,
+                                 ForkJoinPool pool) throws IOException {
+        int chunks = (int) Math.max(1, (size - start + chunkSize - 1) / chunkSize);
+        List<ForkJoinTask<Integer>> counts = new ArrayList<>();
+        for (int k = 0; k < chunks; k++) {
+            long from = start + (long) k * chunkSize;
+            long to = Math.min(size, from + chunkSize);
+            counts.add(pool.submit(() -> countQuotes(ch, from, to, quote)));
+        }
+
+        List<ForkJoinTask<Long>> starts = new ArrayList<>();
+        boolean inQuotes = false;
+        for (int k = 0; k < chunks; k++) {
+            long from = start + (long) k * chunkSize;
+            boolean startsQuoted = inQuotes;
+            if (k > 0) starts.add(pool.submit(() -> nextRecordStart(ch, from, size, quote, startsQuoted)));
+            if ((counts.get(k).join() & 1) == 1) inQuotes = !inQuotes;
+        }
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(Math.min(start, size));
+        for (ForkJoinTask<Long> s : starts) {
+            long b = s.join();
+            // un registro muy largo puede abarcar varios bloques
+            if (b > bounds.get(bounds.size() - 1) && b < size) bounds.add(b);
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static int countQuotes(FileChannel ch, long from, long to, byte quote) throws IOException {
+        if (to <= from) return 0;
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int n = 0;
+        int limit = buf.limit();
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) == quote) n++;
+        }
+        return n;
+    }
+
+    // Busca el inicio del primer registro a partir de 'from'
+    private static long nextRecordStart(FileChannel ch, long from, long size, byte quote, boolean inQuotes) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            long len = Math.min(1 << 20, size - pos);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for (int i = 0; i < len; i++) {
+                byte b = buf.get(i);
+                if (b == quote) inQuotes = !inQuotes;
+                else if (b == '\n' && !inQuotes) return pos + i + 1;
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    private static Parsed parseRange(FileChannel ch, long from, long to, Dialect dialect,
+                                     RowSelection selection) throws IOException {
+        Parsed parsed = new Parsed();
+        if (to <= from) return parsed;
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        CsvByteParser parser = new CsvByteParser(dialect);
+        int limit = buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            boolean header = pos == 0 && from == dialect.bomLength() && dialect.hasHeader();
+            parsed.addStart(from + pos);
+            pos = parser.scan(buf, pos, limit);
+            String[] row = selection == null ? parser.toRow(buf) : selection.toRow(parser, buf, header);
+            if (row != null) parsed.rows.add(row);
+            else parsed.skipped++;
+        }
+        return parsed;
+    }
+
+    // Filas de un bloque y el offset en el archivo donde empieza cada una
+    private static class Parsed {
+        final List<String[]> rows = new ArrayList<>();
+        int skipped = 0; // descartados por la condición
+        long[] starts = new long[1024];
+
+        void addStart(long offset) {
+            int n = rows.size();
+            if (n == starts.length) starts = Arrays.copyOf(starts, n * 2);
+            starts[n] = offset;
+        }
+    }
+}
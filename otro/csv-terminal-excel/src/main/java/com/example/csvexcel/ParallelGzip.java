@@ -0,0 +1,296 @@
+package com.example.csvexcel;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+// Lectura y escritura de CSV comprimidos con gzip usando solo java.util.zip.
+//
+// Al escribir, los datos se cortan en bloques de 1 MB y cada bloque se
+// comprime en paralelo como un miembro gzip independiente (al estilo pigz).
+// Cada miembro lleva en el campo extra ("CX") su tamaño comprimido, así que
+// al leer se pueden ubicar los miembros sin descomprimir y descomprimirlos
+// en paralelo. Cualquier otro .gz se descomprime en un hilo aparte mientras
+// se parsea. En ambos casos el CSV se lee como un flujo normal.
+public class ParallelGzip {
+
+    static final int BLOCK_SIZE = 1 << 20;
+    private static final int HEADER_SIZE = 20; // 10 fijos + XLEN + subcampo CX de 8 bytes
+    private static final int TRAILER_SIZE = 8;
+    private static final byte[] END = new byte[0]; // marca de fin en la cola
+
+    // Los archivos gzip empiezan con 1f 8b
+    public static boolean isGzip(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    // Flujo con el contenido descomprimido; la descompresión avanza en otros
+    // hilos mientras el llamador consume los bloques ya listos
+    public static InputStream open(Path file) throws IOException {
+        int inFlight = 2 * ForkJoinPool.commonPool().getParallelism() + 2;
+        BlockingQueue<Future<byte[]>> queue = new ArrayBlockingQueue<>(inFlight);
+        boolean blocks = hasBlockHeader(file);
+
+        Thread producer = new Thread(() -> {
+            try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+                if (blocks) readMembers(raw, queue);
+                else inflateSequential(raw, queue);
+                queue.put(CompletableFuture.completedFuture(END));
+            } catch (Exception e) {
+                CompletableFuture<byte[]> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                try {
+                    queue.put(failed);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "gzip-lectura");
+        producer.setDaemon(true);
+        producer.start();
+        return new QueueInputStream(queue);
+    }
+
+    private static boolean hasBlockHeader(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] h = in.readNBytes(HEADER_SIZE);
+            return h.length == HEADER_SIZE && (h[3] & 0x04) != 0 && h[10] == 8 && h[11] == 0
+                    && h[12] == 'C' && h[13] == 'X' && h[14] == 4 && h[15] == 0;
+        }
+    }
+
+    // Miembros escritos por este programa: se leen enteros y cada uno se
+    // descomprime en el pool en paralelo; la cola conserva el orden
+    private static void readMembers(InputStream raw, BlockingQueue<Future<byte[]>> queue) throws Exception {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        while (true) {
+            byte[] header = raw.readNBytes(HEADER_SIZE);
+            if (header.length == 0) return;
+            if (header.length < HEADER_SIZE || header[12] != 'C' || header[13] != 'X') {
+                throw new IOException("Bloque gzip inválido");
+            }
+            int memberSize = readInt(header, 16);
+            byte[] rest = raw.readNBytes(memberSize - HEADER_SIZE);
+            if (rest.length != memberSize - HEADER_SIZE) throw new EOFException("Bloque gzip incompleto");
+            queue.put(pool.submit(() -> inflateMember(rest)));
+        }
+    }
+
+    private static byte[] inflateMember(byte[] member) throws IOException {
+        int dataLen = member.length - TRAILER_SIZE;
+        int expectedCrc = readInt(member, dataLen);
+        int size = readInt(member, dataLen + 4);
+        byte[] out = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, 0, dataLen);
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int k = inflater.inflate(out, n, size - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += k;
+            }
+            if (n != size) throw new IOException("Bloque gzip truncado");
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out);
+        if ((int) crc.getValue() != expectedCrc) throw new IOException("CRC inválido en bloque gzip");
+        return out;
+    }
+
+    // gzip de otra herramienta: se descomprime en este hilo (GZIPInputStream
+    // acepta miembros concatenados) y se pasa por la cola ya descomprimido
+    private static void inflateSequential(InputStream raw, BlockingQueue<Future<byte[]>> queue) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(raw, 1 << 16)) {
+            while (true) {
+                byte[] chunk = in.readNBytes(BLOCK_SIZE);
+                if (chunk.length == 0) return;
+                queue.put(CompletableFuture.completedFuture(chunk));
+            }
+        }
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+
+    private static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >>> 8);
+        b[off + 2] = (byte) (v >>> 16);
+        b[off + 3] = (byte) (v >>> 24);
+    }
+
+    // Comprime un bloque como miembro gzip completo con el subcampo CX
+    static byte[] compressMember(byte[] data, int len) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(len / 2 + 64);
+        try {
+            deflater.setInput(data, 0, len);
+            deflater.finish();
+            byte[] buf = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                body.write(buf, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, len);
+
+        int total = HEADER_SIZE + body.size() + TRAILER_SIZE;
+        byte[] member = new byte[total];
+        member[0] = 0x1f;
+        member[1] = (byte) 0x8b;
+        member[2] = 8;       // deflate
+        member[3] = 0x04;    // FEXTRA
+        member[9] = (byte) 0xff; // sistema desconocido
+        member[10] = 8;      // XLEN
+        member[12] = 'C';
+        member[13] = 'X';
+        member[14] = 4;      // largo del subcampo
+        writeInt(member, 16, total);
+        System.arraycopy(body.toByteArray(), 0, member, HEADER_SIZE, body.size());
+        writeInt(member, total - 8, (int) crc.getValue());
+        writeInt(member, total - 4, len);
+        return member;
+    }
+
+    // Flujo que lee en orden los bloques que van llegando a la cola
+    private static class QueueInputStream extends InputStream {
+        private final BlockingQueue<Future<byte[]>> queue;
+        private byte[] current = new byte[0];
+        private int pos = 0;
+        private boolean eof = false;
+
+        QueueInputStream(BlockingQueue<Future<byte[]>> queue) {
+            this.queue = queue;
+        }
+
+        private boolean fill() throws IOException {
+            while (!eof && pos == current.length) {
+                try {
+                    current = queue.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+                pos = 0;
+                if (current == END) eof = true;
+            }
+            return !eof;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return current[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    // Salida gzip por bloques: cada bloque lleno se comprime en el pool y los
+    // miembros se escriben en orden, con un máximo de bloques en vuelo
+    public static class Output extends OutputStream {
+        private final OutputStream out;
+        private final ForkJoinPool pool = ForkJoinPool.commonPool();
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        private final int maxPending = 2 * ForkJoinPool.commonPool().getParallelism() + 2;
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int used = 0;
+        private boolean submitted = false; // ya se comprimió algún miembro
+
+        public Output(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (used == block.length) submitBlock();
+            block[used++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (used == block.length) submitBlock();
+                int n = Math.min(len, block.length - used);
+                System.arraycopy(b, off, block, used, n);
+                used += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void submitBlock() throws IOException {
+            byte[] data = block;
+            int len = used;
+            pending.add(pool.submit(() -> compressMember(data, len)));
+            submitted = true;
+            block = new byte[BLOCK_SIZE];
+            used = 0;
+            while (pending.size() >= maxPending) writeNext();
+        }
+
+        private void writeNext() throws IOException {
+            try {
+                out.write(pending.poll().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        // Comprime lo que quede y escribe todos los miembros pendientes.
+        // Sin datos se escribe igual un miembro vacío: un archivo de 0 bytes
+        // no es un gzip válido
+        public void finish() throws IOException {
+            if (used > 0 || !submitted) submitBlock();
+            while (!pending.isEmpty()) writeNext();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Vista previa de un archivo grande (--preview): las primeras filas más una
+// muestra de filas repartidas por todo el archivo, sin recorrerlo. Para la
+// muestra el archivo se divide en tramos iguales y en cada uno se salta a
+// una posición al azar y se avanza hasta el comienzo del registro siguiente.
+// Así se lee lo mismo con 1 MB que con 20 GB.
+//
+// Saltando a un byte al azar no se sabe si se cayó dentro de un campo entre
+// comillas: se toma como comienzo de registro un salto de línea después del
+// cual los dos registros siguientes tienen tantos campos como el encabezado.
+// Los registros largos salen un poco más seguido que los cortos (ocupan
+// más bytes), algo que no importa para hacerse una idea de los datos.
+public class PreviewSampler {
+
+    static final int HEAD_ROWS = 2000;
+    static final int SAMPLE_ROWS = 2000;
+    // Si el disco es lento se corta la muestra para abrir en menos de un segundo
+    private static final long TIME_BUDGET_MS = 700;
+    private static final int WINDOW = 64 * 1024;
+    private static final int MAX_WINDOW = 4 << 20;
+    private static final int MAX_CANDIDATES = 16;
+
+    private final Sheet sheet;
+    private final int headRows;
+    private final int sampleRows;
+    private final long estimatedRows;
+
+    private PreviewSampler(Sheet sheet, int headRows, int sampleRows, long estimatedRows) {
+        this.sheet = sheet;
+        this.headRows = headRows;
+        this.sampleRows = sampleRows;
+        this.estimatedRows = estimatedRows;
+    }
+
+    // 'cols': solo esas columnas, como en CsvReader.readCsv (null = todas)
+    public static PreviewSampler open(Path path, int[] cols) throws IOException {
+        // un .gz no se puede leer salteado: solo las primeras filas
+        if (ParallelGzip.isGzip(path)) return head(path, cols);
+
+        Dialect dialect = Dialect.sniff(path);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            CsvByteParser parser = new CsvByteParser(dialect);
+            Sheet sheet = new Sheet();
+            sheet.setDialect(dialect);
+
+            // Primeras filas, en orden; si el archivo es chico se lee entero
+            long pos = dialect.bomLength();
+            int width = 0;
+            int head = 0;
+            int maxHead = HEAD_ROWS;
+            ByteBuffer buf = ByteBuffer.allocate(WINDOW);
+            while (head < maxHead && pos < size) {
+                buf = read(ch, pos, size, buf);
+                int at = 0;
+                int limit = buf.limit();
+                while (head < maxHead && at < limit) {
+                    int next = parser.scan(buf, at, limit);
+                    if (!parser.isTerminated() && pos + limit < size) break; // sigue en la ventana siguiente
+                    sheet.appendRow(parser.toRow(buf, cols));
+                    if (head == 0) width = parser.getFieldCount();
+                    head++;
+                    at = next;
+                }
+                if (at == 0) {
+                    if (buf.capacity() >= MAX_WINDOW) break; // un registro enorme: alcanza con lo leído
+                    buf = ByteBuffer.allocate(buf.capacity() * 2);
+                }
+                pos += at;
+                // con pocas filas más que la muestra conviene leerlas todas
+                if (head == HEAD_ROWS && maxHead == HEAD_ROWS
+                        && (size - pos) / Math.max(1, (pos - dialect.bomLength()) / head) <= 4L * SAMPLE_ROWS) {
+                    maxHead = Integer.MAX_VALUE;
+                }
+            }
+            long headEnd = pos;
+            if (headEnd >= size) {
+                // el archivo entero entró en las primeras filas
+                sheet.finishLoad();
+                return new PreviewSampler(sheet, head, 0, head);
+            }
+
+            // Un punto al azar en cada tramo; se visitan en orden aleatorio para
+            // que, si se acaba el tiempo, lo leído siga repartido por el archivo
+            Random random = new Random();
+            long span = size - headEnd;
+            List<Long> offsets = new ArrayList<>();
+            for (int k = 0; k < SAMPLE_ROWS; k++) {
+                long from = headEnd + span * k / SAMPLE_ROWS;
+                long to = headEnd + span * (k + 1) / SAMPLE_ROWS;
+                if (to > from) offsets.add(from + (long) (random.nextDouble() * (to - from)));
+            }
+            Collections.shuffle(offsets, random);
+
+            // por posición en el archivo: ordena la muestra y descarta repetidos
+            Map<Long, String[]> sample = new TreeMap<>();
+            long deadline = System.nanoTime() + TIME_BUDGET_MS * 1_000_000;
+            buf = ByteBuffer.allocate(WINDOW);
+            for (long offset : offsets) {
+                if (System.nanoTime() > deadline) break;
+                sampleAt(ch, offset, size, width, parser, cols, buf, sample);
+            }
+            for (String[] row : sample.values()) sheet.appendRow(row);
+            sheet.finishLoad();
+
+            long avgBytes = Math.max(1, (headEnd - dialect.bomLength()) / Math.max(1, head));
+            return new PreviewSampler(sheet, head, sample.size(), head + span / avgBytes);
+        }
+    }
+
+    // Solo las primeras filas de un flujo comprimido
+    private static PreviewSampler head(Path path, int[] cols) throws IOException {
+        Sheet sheet = new Sheet();
+        int head = 0;
+        try (CsvStreamReader reader = new CsvStreamReader(ParallelGzip.open(path), cols == null ? null : new RowSelection(cols, null))) {
+            sheet.setDialect(reader.getDialect());
+            String[] row;
+            while (head < HEAD_ROWS && (row = reader.readNext()) != null) {
+                sheet.appendRow(row);
+                head++;
+            }
+        }
+        sheet.finishLoad();
+        return new PreviewSampler(sheet, head, 0, -1);
+    }
+
+    // Busca el primer registro que empieza después de 'offset' y lo agrega a
+    // la muestra (si no se encuentra uno confiable, no agrega nada)
+    static void sampleAt(FileChannel ch, long offset, long size, int width, CsvByteParser parser,
+                                 int[] cols, ByteBuffer buf, Map<Long, String[]> sample) throws IOException {
+        int window = WINDOW;
+        while (true) {
+            if (buf.capacity() < window) buf = ByteBuffer.allocate(window);
+            buf = read(ch, offset, size, buf);
+            int limit = buf.limit();
+            boolean atEnd = offset + limit >= size;
+
+            int candidates = 0;
+            int fallback = -1; // primer registro completo, por si ninguno coincide con el encabezado
+            int at = nextLine(buf, 0, limit);
+            while (at >= 0 && at < limit && candidates < MAX_CANDIDATES) {
+                candidates++;
+                int next = parser.scan(buf, at, limit);
+                boolean complete = parser.isTerminated() || atEnd;
+                if (!complete) break; // hace falta una ventana más grande
+                int fields = parser.getFieldCount();
+                if (fallback < 0) fallback = at;
+                boolean matches = fields == width;
+                if (matches && next < limit) {
+                    parser.scan(buf, next, limit);
+                    matches = (parser.isTerminated() || atEnd) && parser.getFieldCount() == width;
+                }
+                if (matches) {
+                    parser.scan(buf, at, limit);
+                    sample.putIfAbsent(offset + at, parser.toRow(buf, cols));
+                    return;
+                }
+                at = nextLine(buf, at, limit);
+            }
+            if (candidates >= MAX_CANDIDATES || atEnd || window >= MAX_WINDOW) {
+                if (fallback >= 0) {
+                    parser.scan(buf, fallback, limit);
+                    sample.putIfAbsent(offset + fallback, parser.toRow(buf, cols));
+                }
+                return;
+            }
+            window *= 2;
+        }
+    }
+
+    // Posición después del próximo \n desde 'from', o -1 si no hay
+    private static int nextLine(ByteBuffer buf, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == '\n') return i + 1;
+        }
+        return -1;
+    }
+
+    // Lee desde 'pos' hasta llenar el búfer (o hasta el final del archivo)
+    private static ByteBuffer read(FileChannel ch, long pos, long size, ByteBuffer buf) throws IOException {
+        buf.clear();
+        buf.limit((int) Math.min(buf.capacity(), size - pos));
+        while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) >= 0) { }
+        buf.flip();
+        return buf;
+    }
+
+    public Sheet getSheet() { return sheet; }
+
+    // Descripción para la línea de estado: deja claro que no es el archivo entero
+    public String getMessage() {
+        if (sampleRows == 0 && estimatedRows == headRows) {
+            return "Vista previa: archivo completo (" + headRows + " filas), no se puede guardar";
+        }
+        String text = "MUESTRA: " + headRows + " primeras filas";
+        if (sampleRows > 0) text += " + " + sampleRows + " al azar";
+        if (estimatedRows > 0) text += " de ~" + estimatedRows + " filas";
+        return text + " (--preview, no se puede guardar)";
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+
+// Índice de filas de un CSV: posición en bytes donde empieza cada registro
+// (un long por fila, más uno final con el tamaño del archivo) y el número
+// máximo de columnas. No guarda ninguna celda.
+// Se puede guardar junto al CSV (archivo.csv.idx) para reabrirlo sin recorrerlo.
+public class RowIndex {
+
+    // "CSVIDX02": la versión 01 guardaba además un byte de tipo por columna
+    private static final long MAGIC = 0x4353564944583032L;
+    private static final int HEADER_HASH_BYTES = 64 * 1024;
+
+    private final LongBuffer offsets;
+    private final int rowCount;
+    private final int colCount;
+
+    public RowIndex(LongBuffer offsets, int colCount) {
+        this.offsets = offsets;
+        this.rowCount = offsets.limit() - 1;
+        this.colCount = colCount;
+    }
+
+    public int getRowCount() { return rowCount; }
+
+    public int getColCount() { return colCount; }
+
+    // Byte donde empieza la fila (row == rowCount devuelve el fin del archivo)
+    public long offset(int row) { return offsets.get(row); }
+
+    // Recorre el archivo en paralelo ubicando el inicio de cada registro,
+    // sin convertir ningún campo a String
+    public static RowIndex build(FileChannel ch, Dialect dialect, LoadProgress progress) throws IOException {
+        long start = System.nanoTime();
+        long size = ch.size();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long[] bounds = ParallelCsvParser.findBoundaries(ch, dialect.bomLength(), size,
+                ParallelCsvParser.DEFAULT_CHUNK_SIZE, (byte) dialect.getQuote(), pool);
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int k = 0; k + 1 < bounds.length; k++) {
+            long from = bounds[k];
+            long to = bounds[k + 1];
+            tasks.add(pool.submit(() -> scanRange(ch, from, to, dialect)));
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        long rows = 0;
+        int cols = 0;
+        for (ForkJoinTask<Chunk> task : tasks) {
+            Chunk c = task.join();
+            chunks.add(c);
+            rows += c.count;
+            cols = Math.max(cols, c.maxCols);
+            if (progress != null) progress.update(rows, CsvReader.rowsPerSecond(rows, start));
+        }
+        if (rows >= Integer.MAX_VALUE) throw new IOException("Demasiadas filas: " + rows);
+
+        long[] all = new long[(int) rows + 1];
+        int n = 0;
+        for (Chunk c : chunks) {
+            System.arraycopy(c.starts, 0, all, n, c.count);
+            n += c.count;
+        }
+        all[n] = size;
+        return new RowIndex(LongBuffer.wrap(all), cols);
+    }
+
+    // Ruta del índice que acompaña a un CSV
+    public static Path sidecarPath(Path csv) {
+        return Paths.get(csv.toString() + ".idx");
+    }
+
+    // Formato: MAGIC, tamaño y fecha del CSV, hash del encabezado, filas,
+    // columnas y finalmente los offsets (filas + 1 longs)
+    public void save(Path csv) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8 * 4 + 4 * 2);
+        head.putLong(MAGIC);
+        head.putLong(Files.size(csv));
+        head.putLong(Files.getLastModifiedTime(csv).toMillis());
+        head.putLong(headerHash(csv));
+        head.putInt(rowCount);
+        head.putInt(colCount);
+        head.flip();
+
+        Path tmp = Paths.get(sidecarPath(csv) + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (head.hasRemaining()) out.write(head);
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            for (int i = 0; i <= rowCount; i++) {
+                if (!buf.hasRemaining()) {
+                    buf.flip();
+                    while (buf.hasRemaining()) out.write(buf);
+                    buf.clear();
+                }
+                buf.putLong(offsets.get(i));
+            }
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+        }
+        Files.move(tmp, sidecarPath(csv), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Abre el índice guardado mapeándolo en memoria (los offsets no se copian).
+    // Devuelve null si no existe, si el CSV cambió desde que se escribió o
+    // si el índice está dañado (se vuelve a armar).
+    public static RowIndex load(Path csv) throws IOException {
+        Path idx = sidecarPath(csv);
+        if (!Files.isRegularFile(idx)) return null;
+        try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.READ)) {
+            if (ch.size() < 8 * 4 + 4 * 2) return null;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (map.getLong() != MAGIC) return null;
+            if (map.getLong() != Files.size(csv)) return null;
+            if (map.getLong() != Files.getLastModifiedTime(csv).toMillis()) return null;
+            if (map.getLong() != headerHash(csv)) return null;
+            int rows = map.getInt();
+            int cols = map.getInt();
+            if (rows < 0 || cols < 0 || ch.size() != map.position() + 8L * (rows + 1)) return null;
+
+            LongBuffer offsets = map.slice().asLongBuffer();
+            // el primero dentro del archivo y el último en su final
+            if (offsets.get(0) < 0 || offsets.get(0) > offsets.get(rows) || offsets.get(rows) != Files.size(csv)) return null;
+            return new RowIndex(offsets, cols);
+        }
+    }
+
+    // CRC del comienzo del archivo (el encabezado), para detectar otro contenido
+    // con el mismo tamaño y fecha
+    static long headerHash(Path csv) throws IOException {
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(HEADER_HASH_BYTES, ch.size()));
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+            buf.flip();
+            CRC32 crc = new CRC32();
+            crc.update(buf);
+            return crc.getValue();
+        }
+    }
+
+    private static Chunk scanRange(FileChannel ch, long from, long to, Dialect dialect) throws IOException {
+        Chunk chunk = new Chunk();
+        if (to <= from) return chunk;
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        CsvByteParser parser = new CsvByteParser(dialect);
+        int limit = buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            chunk.add(from + pos);
+            pos = parser.scan(buf, pos, limit);
+            chunk.maxCols = Math.max(chunk.maxCols, parser.getFieldCount());
+        }
+        return chunk;
+    }
+
+    // Inicios de registro encontrados en un bloque del archivo
+    private static class Chunk {
+        long[] starts = new long[1024];
+        int count = 0;
+        int maxCols = 0;
+
+        void add(long offset) {
+            if (count == starts.length) {
+                long[] n = new long[starts.length * 2];
+                System.arraycopy(starts, 0, n, 0, count);
+                starts = n;
+            }
+            starts[count++] = offset;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.csvexcel;
+
+import java.nio.ByteBuffer;
+
+// Qué se carga de cada registro: solo algunas columnas (--cols) y solo las
+// filas que cumplen una condición (--where). Se decide sobre el registro
+// recién escaneado, antes de crear los String: un registro descartado no
+// llega a convertirse en fila. El encabezado se carga siempre.
+// Una hoja cargada así no tiene todo el archivo y no se guarda encima.
+public class RowSelection {
+
+    private final int[] cols;      // null = todas
+    private final Condition where; // null = todas las filas
+
+    public RowSelection(int[] cols, Condition where) {
+        this.cols = cols;
+        this.where = where;
+    }
+
+    public int[] getColumns() { return cols; }
+
+    public Condition getWhere() { return where; }
+
+    // La fila del registro escaneado por 'parser', o null si se descarta
+    public String[] toRow(CsvByteParser parser, ByteBuffer buf, boolean header) {
+        if (where != null && !header && !parser.matches(buf, where)) return null;
+        return parser.toRow(buf, cols);
+    }
+}
@@ -2,133 +2,323 @@ package com.example.csvexcel;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.*;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 public class Sheet {
 
     private int totalOriginalRows = 0;
-    private List<String[]> originalRows = null;
-    private final List<String[]> rows = new ArrayList<>();
+    // Todas las filas de la hoja (por columnas en un ColumnStore si están en
+    // memoria); con un filtro activo, 'visible' guarda los índices (sobre
+    // 'rows') de las filas que lo cumplen
+    private final List<String[]> rows;
+    private int[] visible = null;
+    private int visibleCount = 0;
     private int maxCols = 0;
+    // Condiciones aplicadas con filterByColumn, para evaluar las filas que
+    // se agregan después sin volver a recorrer la hoja
+    private final List<Condition> filters = new ArrayList<>();
+
+    // Archivo de origen y su índice de filas (si se conoce), para poder
+    // guardar copiando del archivo las filas que no cambiaron
+    private Path sourcePath = null;
+    private RowIndex sourceIndex = null;
+    private final BitSet dirtyRows = new BitSet();
+    private boolean structureChanged = false;
+    // Formato del archivo (separador, comillas, codificación, encabezado),
+    // para guardarlo igual que se leyó
+    private Dialect dialect = Dialect.DEFAULT;
+
+    // Tipo de cada columna. Las numéricas se guardan en una NumericColumn
+    // con el valor ya parseado de cada fila, para que filtros y fórmulas no
+    // vuelvan a parsear texto; las de texto con pocos valores distintos, en
+    // una DictColumn, y en hojas grandes el resto del texto va fuera del
+    // heap (OffHeapColumn). Solo en hojas cargadas en memoria; null si no se
+    // infirieron los tipos.
+    private ColumnType[] types = null;
+    private final Map<String, Expression> compiled = new HashMap<>();
+
+    // Hoja armada con varios archivos (CsvReader.readMany): de qué archivo
+    // viene cada fila. No es una columna (no se muestra ni se guarda), pero
+    // se puede filtrar por él con filterBySource.
+    private List<Path> sourceFiles = null;
+    private int[] sourceStarts = null; // primera fila (en 'rows') de cada archivo, más el final
+    private final List<Condition> sourceFilters = new ArrayList<>();
+
+    // Con filas leídas de un archivo (OverlayRowList) agregar, borrar o
+    // duplicar columnas no toca las filas: 'columnMap' dice en qué posición
+    // de cada fila está cada columna (null = en orden). Las posiciones desde
+    // 'fileCols' son columnas nuevas: guardan lo que se escribe en ellas y,
+    // en las filas sin valor, se leen vacías o con el valor de la posición
+    // de la que se copiaron ('copiedFrom', -1 = ninguna). Al guardar sobre
+    // el origen las filas quedan en orden (compactColumns).
+    private int[] columnMap = null;
+    private int[] copiedFrom = null;
+    private int fileCols = 0;
+
+    // Diario donde se anota cada cambio (null si no hay) y hasta dónde
+    // llegaba cuando empezó el último guardado sobre el origen. En la copia
+    // que se guarda, 'savedJournal' es el diario de la hoja original
+    private EditJournal journal = null;
+    private long journalMark = 0;
+    private EditJournal savedJournal = null;
+
+    public Sheet() {
+        this(new ColumnStore(), 0);
+    }
+
+    // Hoja sobre filas ya existentes (por ejemplo una LazyRowList)
+    Sheet(List<String[]> rows, int maxCols) {
+        this.rows = rows;
+        this.maxCols = maxCols;
+        this.totalOriginalRows = rows.size();
+    }
 
     public void addRow(String[] row) {
         // Asegura que todas las filas tengan la misma cantidad de columnas
-        if (row.length < maxCols) {
-            String[] newRow = new String[maxCols];
+        // (con columnMap, las del archivo: las nuevas se leen aparte)
+        int width = columnMap == null ? maxCols : fileCols;
+        if (row.length < width) {
+            String[] newRow = new String[width];
             System.arraycopy(row, 0, newRow, 0, row.length);
-            for (int i = row.length; i < maxCols; i++) newRow[i] = "";
+            for (int i = row.length; i < width; i++) newRow[i] = "";
             row = newRow;
         }
         rows.add(row);
+        if (visible != null && matchesFilters(rows.size() - 1)) addVisible(rows.size() - 1);
         if (row.length > maxCols) {
             maxCols = row.length;
             normalizeColumnCount();
         }
+        rowAdded(rows.size() - 1, row);
         totalOriginalRows++;
     }
+
+    // Carga en streaming: agrega la fila tal cual, sin recorrer las anteriores
+    void appendRow(String[] row) {
+        addLoadedRow(row);
+        if (isSettlePoint(rows.size())) applySettled(settleColumns());
+    }
+
+    // Igual que appendRow pero sin settleColumns: la carga en segundo plano
+    // arma esas columnas en su hilo y la interfaz solo las reemplaza
+    void addLoadedRow(String[] row) {
+        rows.add(row);
+        if (row.length > maxCols) maxCols = row.length;
+        totalOriginalRows++;
+    }
+
+    // Al terminar la carga se rellenan las filas cortas en una sola pasada
+    // y se infiere el tipo de cada columna
+    void finishLoad() {
+        finishRows();
+        applyTypes(inferTypes());
+    }
+
+    // La carga en segundo plano lo hace en dos partes: las filas y el tipo
+    // de cada columna se arman en el hilo de la interfaz (cambian la hoja),
+    // inferTypes() en el hilo de la carga (solo lee)
+    void finishRows() {
+        normalizeColumnCount();
+    }
+
+    // Registros leídos del archivo que no se cargaron (--where): cuentan en
+    // el total aunque no estén en la hoja
+    void addSkippedRows(long count) {
+        totalOriginalRows += count;
+    }
+
     public int getTotalOriginalRows() {
         return totalOriginalRows;
     }
     public void addColumn() {
+        if (journal != null) journal.addColumn();
         maxCols++;
-        for (int i = 0; i < rows.size(); i++) {
-            String[] row = rows.get(i);
-            String[] newRow = new String[maxCols];
-            System.arraycopy(row, 0, newRow, 0, row.length);
-            newRow[maxCols - 1] = ""; // nueva celda vacía
-            rows.set(i, newRow);
-        }
+        structureChanged = true;
+        numericColumnInserted(maxCols - 1, null);
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).insertColumn(maxCols - 1, newColumn());
+        else insertMapped(maxCols - 1, maxCols - 1, -1);
     }
 
     public void addColumnAt(int index) {
         // Si el índice es mayor al número actual de columnas, lo ajustamos
         if (index > maxCols) index = maxCols;
+        if (journal != null) journal.addColumnAt(index);
         maxCols++;
-
-        for (int i = 0; i < rows.size(); i++) {
-            String[] row = rows.get(i);
-            String[] newRow = new String[maxCols];
-            // Copiar las columnas antes del índice
-            System.arraycopy(row, 0, newRow, 0, index);
-            // Insertar nueva columna vacía
-            newRow[index] = "";
-            // Copiar las columnas después del índice
-            System.arraycopy(row, index, newRow, index + 1, row.length - index);
-            rows.set(i, newRow);
-        }
+        structureChanged = true;
+        columnInserted(index);
+        numericColumnInserted(index, null);
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).insertColumn(index, newColumn());
+        else insertMapped(index, maxCols - 1, -1);
     }
 
     public void removeColumnAt(int index) {
         if (index < 0 || index >= maxCols) return; // índice fuera de rango
+        if (journal != null) journal.removeColumnAt(index);
         maxCols--;
-
-        for (int i = 0; i < rows.size(); i++) {
-            String[] row = rows.get(i);
-            if (row.length <= 1) {
-                // si solo hay una columna, la dejamos vacía
-                rows.set(i, new String[maxCols]);
-                continue;
-            }
-
-            String[] newRow = new String[maxCols];
-            // copia todo antes de la columna eliminada
-            System.arraycopy(row, 0, newRow, 0, index);
-            // copia todo después de la columna eliminada
-            if (index < row.length - 1) {
-                System.arraycopy(row, index + 1, newRow, index, row.length - index - 1);
-            }
-            rows.set(i, newRow);
-        }
+        structureChanged = true;
+        columnRemoved(index);
+        numericColumnRemoved(index);
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).removeColumn(index);
+        else removeMapped(index, maxCols + 1);
     }
 
     public void duplicateColumnAt(int index) {
         if (index < 0 || index >= maxCols) return;
+        if (journal != null) journal.duplicateColumnAt(index);
         maxCols++;
+        structureChanged = true;
+        columnInserted(index + 1);
+        numericColumnInserted(index + 1, index);
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).duplicateColumn(index);
+        else insertMapped(index + 1, maxCols - 1, index);
+    }
 
-        for (int i = 0; i < rows.size(); i++) {
-            String[] row = rows.get(i);
-            String[] newRow = new String[maxCols];
+    // ---- Columnas de las filas leídas de un archivo ----
 
-            // Copiar columnas hasta la actual
-            System.arraycopy(row, 0, newRow, 0, index + 1);
+    // Posición en la fila de cada columna; la primera vez parte de las
+    // 'cols' columnas en orden
+    private int[] mappedColumns(int cols) {
+        if (columnMap == null) {
+            columnMap = IntStream.range(0, cols).toArray();
+            copiedFrom = new int[cols];
+            Arrays.fill(copiedFrom, -1);
+            fileCols = cols;
+        }
+        return columnMap;
+    }
 
-            // Duplicar la columna actual
-            newRow[index + 1] = index < row.length ? row[index] : "";
+    // Columna nueva en 'index': una posición nueva, vacía o copia de la
+    // columna 'source' (-1 = vacía)
+    private void insertMapped(int index, int cols, int source) {
+        int[] map = mappedColumns(cols);
+        int slot = copiedFrom.length;
+        copiedFrom = Arrays.copyOf(copiedFrom, slot + 1);
+        copiedFrom[slot] = source < 0 ? -1 : map[source];
+        int[] m = new int[map.length + 1];
+        System.arraycopy(map, 0, m, 0, index);
+        m[index] = slot;
+        System.arraycopy(map, index, m, index + 1, map.length - index);
+        columnMap = m;
+    }
 
-            // Copiar el resto
-            if (index + 1 < row.length) {
-                System.arraycopy(row, index + 1, newRow, index + 2, row.length - index - 1);
+    // La posición queda sin usar en las filas hasta que se guarden
+    private void removeMapped(int index, int cols) {
+        int[] map = mappedColumns(cols);
+        int[] m = new int[map.length - 1];
+        System.arraycopy(map, 0, m, 0, index);
+        System.arraycopy(map, index + 1, m, index, map.length - index - 1);
+        columnMap = m;
+    }
+
+    // Valor de la posición 'p' de una fila; una posición nueva sin valor
+    // está vacía o tiene el de la columna de la que se copió
+    private String slotValue(String[] row, int p) {
+        String v = p < row.length ? row[p] : null;
+        if (v != null || p < fileCols) return v;
+        int from = copiedFrom[p];
+        if (from < 0) return "";
+        String source = slotValue(row, from);
+        return source == null ? "" : source;
+    }
+
+    // La fila con las columnas en el orden que se ven
+    private String[] logicalRow(String[] row) {
+        String[] values = new String[columnMap.length];
+        for (int c = 0; c < values.length; c++) values[c] = slotValue(row, columnMap[c]);
+        return values;
+    }
+
+    // Escribe una celda copiando la fila ('pad': rellena con "" si la fila
+    // era más corta). Las copias de la columna que todavía leían su valor
+    // se quedan con el anterior.
+    private void writeRowCell(int base, int col, String value, boolean pad) {
+        String[] row = rows.get(base);
+        int p = col;
+        if (columnMap != null) {
+            while (col >= columnMap.length) insertMapped(columnMap.length, columnMap.length, -1);
+            p = columnMap[col];
+        }
+        String[] newRow = Arrays.copyOf(row, Math.max(row.length, p + 1));
+        if (pad) {
+            int padTo = columnMap == null ? newRow.length : Math.min(newRow.length, fileCols);
+            for (int k = row.length; k < padTo; k++) newRow[k] = "";
+        }
+        if (columnMap != null) {
+            String old = slotValue(row, p);
+            for (int q = fileCols; q < copiedFrom.length; q++) {
+                if (copiedFrom[q] != p || (q < newRow.length && newRow[q] != null)) continue;
+                if (q >= newRow.length) newRow = Arrays.copyOf(newRow, q + 1);
+                newRow[q] = old == null ? "" : old;
             }
+        }
+        newRow[p] = value;
+        rows.set(base, newRow);
+    }
 
-            rows.set(i, newRow);
+    // Al guardar sobre el origen el archivo nuevo ya tiene las columnas en
+    // orden: las filas que siguen en memoria ('keep' y las agregadas) se
+    // pasan a ese orden y se deja de usar columnMap
+    private void compactColumns(OverlayRowList overlay, BitSet keep) {
+        if (columnMap == null) return;
+        for (int r = keep.nextSetBit(0); r >= 0 && r < overlay.baseSize(); r = keep.nextSetBit(r + 1)) {
+            overlay.set(r, logicalRow(overlay.get(r)));
         }
+        for (int r = overlay.baseSize(); r < overlay.size(); r++) overlay.set(r, logicalRow(overlay.get(r)));
+        columnMap = null;
+        copiedFrom = null;
+        fileCols = 0;
     }
+
     public Cell getCell(int row, int col) {
-        if (row >= rows.size() || row < 0) return new Cell("");
-        String[] line = rows.get(row);
-        if (col >= line.length || col < 0) return new Cell("");
-        return new Cell(line[col]);
+        if (row >= getRowCount() || row < 0) return new Cell("");
+        String text = cellText(baseRow(row), col);
+        return new Cell(text == null ? "" : text);
     }
 
-    public void setCell(int row, int col, String value) {
-        // Asegura que la fila exista
-        while (rows.size() <= row) {
-            rows.add(new String[col + 1]);
+    // Texto de una celda de 'rows' (null si la fila no llega a esa columna);
+    // con filas mapeadas (SliceRowList) se decodifica solo esa celda y en un
+    // ColumnStore se lee de la columna sin armar la fila
+    private String cellText(int base, int col) {
+        if (rows instanceof ColumnStore) return ((ColumnStore) rows).cell(base, col);
+        if (columnMap != null) {
+            if (col < 0 || col >= columnMap.length) return null;
+            col = columnMap[col];
+            if (col >= fileCols) return slotValue(rows.get(base), col);
         }
+        if (rows instanceof OverlayRowList) return ((OverlayRowList) rows).cell(base, col);
+        String[] line = rows.get(base);
+        return col >= 0 && col < line.length ? line[col] : null;
+    }
 
-        // Asegura que la columna exista en esta fila
-        String[] rowArray = rows.get(row);
-        if (rowArray.length <= col) {
-            String[] newRow = new String[col + 1];
-            System.arraycopy(rowArray, 0, newRow, 0, rowArray.length);
-            rows.set(row, newRow);
-            rowArray = newRow;
+    public void setCell(int row, int col, String value) {
+        // Asegura que la fila exista
+        if (visible == null) {
+            while (rows.size() <= row) {
+                rows.add(new String[col + 1]);
+                rowAdded(rows.size() - 1, rows.get(rows.size() - 1));
+            }
+        } else if (row >= visibleCount) {
+            return;
         }
+        journalSetCell(row, col, value);
 
-        // Asigna el valor
-        rows.get(row)[col] = value;
+        // Copia la fila (con espacio para la columna) y la vuelve a guardar,
+        // así la edición queda registrada aunque las filas se lean del archivo
+        int base = baseRow(row);
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).setCell(base, col, value);
+        else writeRowCell(base, col, value, false);
+        dirtyRows.set(base);
+        numberChanged(base, col, value);
 
         // Si es una fórmula (empieza con =), aplica a toda la columna automáticamente
         if (value.startsWith("=")) {
@@ -136,8 +326,40 @@ public class Sheet {
         }
     }
 
+    // Una fórmula con filtro se aplica solo a las filas visibles: se anotan
+    // junto con la celda para repetirla igual al recuperar el diario
+    private void journalSetCell(int row, int col, String value) {
+        if (journal == null) return;
+        if (visible != null && value.startsWith("=")) journal.setCell(row, col, value, Arrays.copyOf(visible, visibleCount));
+        else journal.setCell(baseRow(row), col, value, null);
+    }
+
+    // Repite un setCell anotado en el diario ('view': filas visibles de entonces)
+    void replaySetCell(int row, int col, String value, int[] view) {
+        int[] savedVisible = visible;
+        int savedCount = visibleCount;
+        visible = view;
+        visibleCount = view == null ? 0 : view.length;
+        try {
+            setCell(row, col, value);
+        } finally {
+            visible = savedVisible;
+            visibleCount = savedCount;
+        }
+    }
+
     private void normalizeColumnCount() {
+        // Las columnas que aparecen con una fila más larga son de texto
+        if (types != null && types.length < maxCols) {
+            int from = types.length;
+            types = Arrays.copyOf(types, maxCols);
+            Arrays.fill(types, from, maxCols, ColumnType.TEXT);
+        }
         // Asegura que todas las filas tengan el mismo número de columnas
+        if (rows instanceof ColumnStore) {
+            ((ColumnStore) rows).ensureColCount(maxCols); // las celdas que faltan ya se leen ""
+            return;
+        }
         for (int i = 0; i < rows.size(); i++) {
             String[] row = rows.get(i);
             if (row.length < maxCols) {
@@ -149,11 +371,395 @@ public class Sheet {
         }
     }
 
-    public int getRowCount() { return rows.size(); }
+    public int getRowCount() { return visible == null ? rows.size() : visibleCount; }
 
     public int getColCount() { return maxCols; }
 
-    public List<String[]> getRows() { return rows; }
+    // Filas visibles (las filtradas si hay un filtro activo), con las
+    // columnas en el orden en que se ven
+    public List<String[]> getRows() {
+        if (visible == null && columnMap == null) return rows;
+        return new AbstractList<String[]>() {
+            @Override
+            public String[] get(int i) {
+                String[] row = rows.get(baseRow(i));
+                return columnMap == null ? row : logicalRow(row);
+            }
+
+            @Override
+            public int size() { return getRowCount(); }
+        };
+    }
+
+    public boolean isFiltered() { return visible != null; }
+
+    // ---- Archivo de origen y filas modificadas ----
+
+    void setSource(Path path, RowIndex index) {
+        this.sourcePath = path;
+        this.sourceIndex = index;
+    }
+
+    Path getSourcePath() { return sourcePath; }
+
+    RowIndex getSourceIndex() { return sourceIndex; }
+
+    BitSet getDirtyRows() { return dirtyRows; }
+
+    Dialect getDialect() { return dialect; }
+
+    void setJournal(EditJournal journal) { this.journal = journal; }
+
+    void setSourceFiles(List<Path> files, int[] starts) {
+        this.sourceFiles = files;
+        this.sourceStarts = starts;
+    }
+
+    // Archivos de una hoja armada con varios (null si viene de uno solo)
+    List<Path> getSourceFiles() { return sourceFiles; }
+
+    // Nombre del archivo del que viene la fila visible 'row' ("" si no
+    // viene de ninguno, por ejemplo una fila agregada)
+    public String getSourceFile(int row) {
+        if (row < 0 || row >= getRowCount()) return "";
+        return sourceName(baseRow(row));
+    }
+
+    private String sourceName(int base) {
+        if (sourceFiles == null) return "";
+        int k = Arrays.binarySearch(sourceStarts, base);
+        if (k < 0) k = -k - 2;
+        // archivos sin filas comparten la primera fila con el siguiente
+        else while (k + 1 < sourceStarts.length && sourceStarts[k + 1] == base) k++;
+        if (k < 0 || k >= sourceFiles.size()) return "";
+        return sourceFiles.get(k).getFileName().toString();
+    }
+
+    void setDialect(Dialect dialect) { this.dialect = dialect; }
+
+    // Se puede guardar copiando bytes del origen: se conoce el offset de cada
+    // fila, no hay filtro, no cambiaron las columnas y el archivo sigue igual.
+    // Con comillas en todos los campos se reescribe todo: las filas copiadas
+    // quedarían con las comillas del original
+    boolean canSaveIncrementally() {
+        if (sourceIndex == null || visible != null || structureChanged || columnMap != null) return false;
+        if (dialect.isQuoteAll()) return false;
+        if (rows.size() < sourceIndex.getRowCount()) return false;
+        try {
+            return Files.size(sourcePath) == sourceIndex.offset(sourceIndex.getRowCount());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Guardar en 'target' reemplaza al archivo de origen con todas las filas
+    boolean savesOverSource(Path target) {
+        return visible == null && isSource(target);
+    }
+
+    // 'target' es el archivo del que se abrió la hoja
+    boolean isSource(Path target) {
+        return sourcePath != null
+                && target.toAbsolutePath().normalize().equals(sourcePath.toAbsolutePath().normalize());
+    }
+
+    // Copia para guardar en segundo plano: comparte los arreglos de cada fila
+    // (que nunca se modifican en el lugar, siempre se reemplazan), no las
+    // listas; un ColumnStore comparte las columnas hasta que se modifiquen
+    Sheet snapshot() {
+        List<String[]> copy;
+        if (rows instanceof OverlayRowList) copy = ((OverlayRowList) rows).snapshot();
+        else if (rows instanceof ColumnStore) copy = ((ColumnStore) rows).snapshot();
+        else copy = new ArrayList<>(rows);
+        Sheet s = new Sheet(copy, maxCols);
+        if (visible != null) {
+            s.visible = Arrays.copyOf(visible, visibleCount);
+            s.visibleCount = visibleCount;
+        }
+        s.totalOriginalRows = totalOriginalRows;
+        s.sourcePath = sourcePath;
+        s.sourceIndex = sourceIndex;
+        s.dialect = dialect;
+        s.sourceFiles = sourceFiles;
+        s.sourceStarts = sourceStarts;
+        s.dirtyRows.or(dirtyRows);
+        s.structureChanged = structureChanged;
+        s.filters.addAll(filters);
+        s.columnMap = columnMap;
+        s.copiedFrom = copiedFrom;
+        s.fileCols = fileCols;
+        if (journal != null) {
+            s.savedJournal = journal;
+            s.journalMark = journal.mark();
+        }
+        return s;
+    }
+
+    // La copia de snapshot() ya no se usa: las columnas que compartía con
+    // la hoja vuelven a modificarse sin copiarlas. Desde el hilo de la interfaz
+    void release() {
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).release();
+    }
+
+    // CsvSaver lo llama con el archivo ya escrito, antes de reemplazar a
+    // 'target': si reemplaza al origen, el diario anota hasta qué cambio
+    // tiene ese archivo (ver EditJournal.saving)
+    void beforeReplace(Path written, Path target) {
+        if (!savesOverSource(target)) return;
+        if (savedJournal != null) savedJournal.saving(journalMark, written);
+        else if (journal != null) journal.saving(journal.mark(), written);
+    }
+
+    // Al empezar a guardar sobre el origen, los cambios pasan a la copia;
+    // lo que se edite mientras tanto queda marcado para el próximo guardado
+    void clearChanges() {
+        dirtyRows.clear();
+        structureChanged = false;
+        if (journal != null) journalMark = journal.mark();
+    }
+
+    // Si el guardado falló se recuperan los cambios que tenía la copia
+    void restoreChanges(Sheet snapshot) {
+        dirtyRows.or(snapshot.dirtyRows);
+        structureChanged |= snapshot.structureChanged;
+    }
+
+    // Después de guardar sobre el archivo de origen el nuevo índice pasa a ser
+    // el origen; solo siguen en memoria las filas cambiadas desde entonces
+    void markSaved(RowIndex newIndex) throws IOException {
+        sourceIndex = newIndex;
+        if (journal != null) journal.compacted(journalMark, sourcePath);
+        BitSet keep = (BitSet) dirtyRows.clone();
+        if (structureChanged) keep.set(0, rows.size());
+        if (rows instanceof LazyRowList && newIndex != null) {
+            compactColumns((OverlayRowList) rows, keep);
+            ((LazyRowList) rows).rebase(sourcePath, newIndex, keep);
+        } else if (rows instanceof SliceRowList && newIndex != null) {
+            compactColumns((OverlayRowList) rows, keep);
+            ((SliceRowList) rows).rebase(sourcePath, keep);
+        } else if (rows instanceof CsvxRowList && CsvxFormat.isCsvx(sourcePath)) {
+            compactColumns((OverlayRowList) rows, keep);
+            ((CsvxRowList) rows).rebase(sourcePath, keep);
+        }
+    }
+
+    // ---- Tipos de columna y valores numéricos ----
+
+    // Con una muestra se eligen las columnas candidatas a numéricas; después
+    // se parsea cada una completa (en paralelo) y si algún valor no es un
+    // número la columna queda como texto. Si el archivo tiene encabezado la
+    // fila 0 no cuenta (queda NaN).
+    private static final int TYPE_SAMPLE_ROWS = 1000;
+    // Desde cuántas filas una columna de texto se guarda fuera del heap
+    static final int OFF_HEAP_ROWS = 1 << 20;
+
+    // Desde cuántas filas se eligen durante la carga las columnas numéricas y codificadas
+    static final int SETTLE_ROWS = 1 << 16;
+
+    // Durante la carga (al llegar a SETTLE_ROWS filas y de nuevo a
+    // OFF_HEAP_ROWS), cada columna de texto pasa a la forma que
+    // probablemente tenga al final, numérica o codificada (y fuera del heap
+    // desde OFF_HEAP_ROWS), y las filas siguientes se escriben ahí
+    // directamente: así el archivo nunca está entero en el heap como String.
+    // Todas guardan cualquier texto; si las filas siguientes no encajan,
+    // inferTypes elige otra forma al terminar.
+    static boolean isSettlePoint(long rowCount) {
+        return rowCount == SETTLE_ROWS || rowCount == OFF_HEAP_ROWS;
+    }
+
+    // Las columnas nuevas (null: queda como está); igual que inferTypes no
+    // cambia la hoja (ver applySettled)
+    Column[] settleColumns() {
+        if (!(rows instanceof ColumnStore)) return null;
+        ColumnStore store = (ColumnStore) rows;
+        boolean offHeap = rows.size() >= OFF_HEAP_ROWS;
+        Column[] settled = new Column[store.getColCount()];
+        IntStream.range(0, settled.length).parallel().forEach(c -> {
+            if (!(store.column(c) instanceof TextColumn)) return;
+            Column column = parseColumn(c);
+            if (column == null) column = encodeColumn(c);
+            if (column == null && offHeap) column = offHeapColumn(c);
+            settled[c] = column;
+        });
+        return settled;
+    }
+
+    void applySettled(Column[] settled) {
+        if (settled == null) return;
+        ColumnStore store = (ColumnStore) rows;
+        for (int c = 0; c < settled.length; c++) {
+            if (settled[c] != null) store.replaceColumn(c, settled[c]);
+        }
+    }
+
+    // Tipo de cada columna y cómo guardarla; no cambia la hoja (ver applyTypes)
+    InferredTypes inferTypes() {
+        if (!(rows instanceof ColumnStore)) return null; // se leen del archivo bajo demanda
+        ColumnType[] sampled = ColumnType.infer(rows.subList(0, Math.min(rows.size(), TYPE_SAMPLE_ROWS)), maxCols,
+                dialect.hasHeader());
+        Column[] parsed = new Column[maxCols];
+        ColumnStore store = (ColumnStore) rows;
+        IntStream.range(0, maxCols).parallel().forEach(c -> {
+            if (c < store.getColCount() && store.column(c) instanceof OffHeapColumn) {
+                sampled[c] = ColumnType.TEXT; // ya se cargó fuera del heap (settleColumns)
+                return;
+            }
+            if (sampled[c] != ColumnType.TEXT) parsed[c] = parseColumn(c);
+            if (parsed[c] == null) {
+                sampled[c] = ColumnType.TEXT;
+                parsed[c] = encodeColumn(c);
+            }
+            if (parsed[c] == null && rows.size() >= OFF_HEAP_ROWS) parsed[c] = offHeapColumn(c);
+        });
+        return new InferredTypes(sampled, parsed);
+    }
+
+    void applyTypes(InferredTypes inferred) {
+        if (inferred == null) return;
+        ColumnStore store = (ColumnStore) rows;
+        for (int c = 0; c < inferred.columns.length; c++) {
+            if (inferred.columns[c] != null) store.replaceColumn(c, inferred.columns[c]);
+        }
+        types = inferred.types;
+    }
+
+    static class InferredTypes {
+        final ColumnType[] types;
+        final Column[] columns; // null: la columna queda como está
+
+        InferredTypes(ColumnType[] types, Column[] columns) {
+            this.types = types;
+            this.columns = columns;
+        }
+    }
+
+    // La columna como NumericColumn, o null si algún valor no es un número
+    private NumericColumn parseColumn(int col) {
+        NumericColumn column = new NumericColumn();
+        for (int r = 0; r < rows.size(); r++) {
+            String v = cellText(r, col);
+            if (v == null || v.isEmpty()) continue;
+            if (r >= firstDataRow() && !Expression.isPlainNumber(v)) return null;
+            column.set(r, v);
+        }
+        return column;
+    }
+
+    // La columna como DictColumn, o null si tiene demasiados valores
+    // distintos (o casi todos distintos: no se ahorraría nada)
+    private DictColumn encodeColumn(int col) {
+        DictColumn column = new DictColumn();
+        for (int r = 0; r < rows.size(); r++) {
+            String v = cellText(r, col);
+            if (!column.accepts(v)) return null;
+            column.set(r, v);
+        }
+        return column.distinct() * 2 <= rows.size() ? column : null;
+    }
+
+    private OffHeapColumn offHeapColumn(int col) {
+        OffHeapColumn column = new OffHeapColumn();
+        for (int r = 0; r < rows.size(); r++) column.set(r, cellText(r, col));
+        return column;
+    }
+
+    // Columna nueva y vacía: numérica, pasa a texto si se escribe un texto
+    private Column newColumn() {
+        return types == null ? new TextColumn() : new NumericColumn();
+    }
+
+    private int firstDataRow() {
+        return dialect.hasHeader() ? 1 : 0;
+    }
+
+    private boolean isHeaderRow(int base) {
+        return base == 0 && dialect.hasHeader();
+    }
+
+    public ColumnType getColumnType(int col) {
+        return types == null || col >= types.length ? null : types[col];
+    }
+
+    // Valores parseados de la columna (por fila de 'rows'), o null si es texto
+    private double[] numericColumn(int col) {
+        if (types == null || col >= types.length || types[col] == ColumnType.TEXT) return null;
+        Column column = ((ColumnStore) rows).column(col);
+        return column instanceof NumericColumn ? ((NumericColumn) column).values() : null;
+    }
+
+    // Cómo se guarda la columna (null si las filas no están en un ColumnStore)
+    Column storedColumn(int col) {
+        if (!(rows instanceof ColumnStore) || col >= ((ColumnStore) rows).getColCount()) return null;
+        return ((ColumnStore) rows).column(col);
+    }
+
+    private void rowAdded(int base, String[] row) {
+        if (types == null) return;
+        for (int c = 0; c < types.length; c++) numberChanged(base, c, c < row.length ? row[c] : null);
+    }
+
+    // La columna ya guarda el valor; acá solo se actualiza el tipo: un valor
+    // que no es número pasa la columna a texto (salvo en el encabezado)
+    private void numberChanged(int base, int col, String value) {
+        if (types == null || col >= types.length || types[col] == ColumnType.TEXT) return;
+        if (isHeaderRow(base) || value == null || value.isEmpty()) return;
+        if (!Expression.isPlainNumber(value)) types[col] = ColumnType.TEXT;
+        else if (types[col] == ColumnType.INTEGER && value.indexOf('.') >= 0) types[col] = ColumnType.DECIMAL;
+    }
+
+    // Columna nueva: vacía (numérica sin valores) o copia de 'source'
+    private void numericColumnInserted(int index, Integer source) {
+        if (types == null) return;
+        ColumnType[] t = new ColumnType[types.length + 1];
+        System.arraycopy(types, 0, t, 0, index);
+        t[index] = source == null ? ColumnType.INTEGER : types[source];
+        System.arraycopy(types, index, t, index + 1, types.length - index);
+        types = t;
+    }
+
+    private void numericColumnRemoved(int index) {
+        if (types == null || index >= types.length) return;
+        ColumnType[] t = new ColumnType[types.length - 1];
+        System.arraycopy(types, 0, t, 0, index);
+        System.arraycopy(types, index + 1, t, index, types.length - index - 1);
+        types = t;
+    }
+
+    // Convierte un índice de fila visible en el índice dentro de 'rows'
+    private int baseRow(int row) {
+        return visible == null ? row : visible[row];
+    }
+
+    private boolean matchesFilters(int base) {
+        for (Condition c : filters) {
+            if (!matchesCell(c, base)) return false;
+        }
+        for (Condition c : sourceFilters) {
+            if (!c.test(sourceName(base))) return false;
+        }
+        return true;
+    }
+
+    // Las condiciones del filtro siguen apuntando a la misma columna
+    private void columnInserted(int index) {
+        for (int i = 0; i < filters.size(); i++) {
+            Condition c = filters.get(i);
+            if (c.getColumn() >= index) filters.set(i, c.withColumn(c.getColumn() + 1));
+        }
+    }
+
+    private void columnRemoved(int index) {
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            Condition c = filters.get(i);
+            if (c.getColumn() == index) filters.remove(i);
+            else if (c.getColumn() > index) filters.set(i, c.withColumn(c.getColumn() - 1));
+        }
+    }
+
+    private void addVisible(int base) {
+        if (visibleCount == visible.length) visible = Arrays.copyOf(visible, Math.max(16, visibleCount * 2));
+        visible[visibleCount++] = base;
+    }
     //==================================================
 
     public String evaluateCell(int row, int col) {
@@ -164,57 +770,59 @@ public class Sheet {
             return val; // no es fórmula
         }
 
+        // Soporta referencias como A1, B2, C3 (a la misma fila)
         try {
-            String expr = val.substring(1).replaceAll("\\s+", ""); // quita '=' y espacios
-
-            // Soporta referencias como A1, B2, C3
-            expr = replaceCellReferences(expr, row);
-
-            // Evalúa expresión aritmética (sólo + - * /)
-            return String.valueOf(evalMath(expr));
-        } catch (Exception e) {
-            return "#ERR";
+            return evaluateSameRow(compiledFormula(val), row);
+        } catch (RuntimeException e) {
+            return "#ERR"; // la fórmula no se pudo compilar
         }
     }
 //`````````````````````````````````````````````````````````````````
 
-    private String replaceCellReferences(String formula, int rowIndex) {
-        String result = formula;
-        String[] row = rows.get(rowIndex);
-
-        for (int colIndex = 0; colIndex < row.length; colIndex++) {
-            char colLetter = (char) ('A' + colIndex);
-            String cellRef = "" + colLetter + (rowIndex + 1);
+    // Las fórmulas se compilan una sola vez (ver Expression) y se reutilizan
+    private static final int MAX_COMPILED = 1024;
 
-            String cellValue = row[colIndex];
-            if (cellValue == null || cellValue.isEmpty()) cellValue = "0";
+    private Expression compiledFormula(String formula) {
+        Expression expr = compiled.get(formula);
+        if (expr == null) {
+            if (compiled.size() >= MAX_COMPILED) compiled.clear();
+            expr = Expression.compile(formula);
+            compiled.put(formula, expr);
+        }
+        return expr;
+    }
 
-            result = result.replaceAll(cellRef, cellValue);
+    // Evalúa con las referencias a la fila 'row'; otra fila da #ERR
+    private String evaluateSameRow(Expression expr, int row) {
+        try {
+            return String.valueOf(expr.eval((c, r) -> {
+                if (r != row + 1) throw new IllegalArgumentException("Referencia a otra fila");
+                return cellNumber(row, c);
+            }));
+        } catch (RuntimeException e) {
+            return "#ERR";
         }
+    }
 
-        return result;
+    // Valor numérico de una celda sin evaluarla (vacía = 0); en columnas
+    // numéricas se usa el valor ya parseado
+    private double cellNumber(int row, int col) {
+        int base = baseRow(row);
+        double[] values = numericColumn(col);
+        if (values != null && !isHeaderRow(base) && base < values.length) {
+            double v = values[base];
+            return Double.isNaN(v) ? 0 : v;
+        }
+        String text = cellText(base, col);
+        if (text == null) throw new IllegalArgumentException("Columna fuera de la fila");
+        return Expression.cellValue(text);
     }
- 
+
        
     public String getColumnName(int index) {
         return String.valueOf((char) ('A' + index));
     }
 
-    private String evaluateFormula(String expr) {
-        try {
-            if (expr.startsWith("=")) expr = expr.substring(1);
-            expr = expr.replaceAll("\\s+", ""); // limpia espacios
-
-            // ✅ Reemplaza todas las referencias antes
-            // (si ya vienen reemplazadas no pasa nada)
-            double result = evalMath(expr);
-            return String.valueOf(result);
-
-        } catch (Exception e) {
-            System.out.println("⚠️ Error evaluando fórmula: " + expr);
-            return "#ERR";
-        }
-    }
     private double simpleEval(String expr) {
         expr = expr.replaceAll("[^0-9+\\-*/.]", ""); // limpia caracteres extraños
         String[] nums = expr.split("[+]");
@@ -223,82 +831,17 @@ public class Sheet {
         return sum;
     }
    //`````````````````````````````````````````````````````````````````
-    private int columnToIndex(String col) {
-        int index = 0;
-        for (int i = 0; i < col.length(); i++) {
-            index = index * 26 + (col.charAt(i) - 'A' + 1);
-        }
-        return index - 1;
-    }
-    // Evaluador de expresiones matemáticas simples (+, -, *, /)
-    private double evalMath(String expr) {
-        return new Object() {
-            int pos = -1, ch;
-
-            void nextChar() {
-                ch = (++pos < expr.length()) ? expr.charAt(pos) : -1;
-            }
-
-            boolean eat(int charToEat) {
-                while (ch == ' ') nextChar();
-                if (ch == charToEat) {
-                    nextChar();
-                    return true;
-                }
-                return false;
-            }
-
-            double parse() {
-                nextChar();
-                double x = parseExpression();
-                if (pos < expr.length()) throw new RuntimeException("Unexpected: " + (char) ch);
-                return x;
-            }
-
-            double parseExpression() {
-                double x = parseTerm();
-                for (;;) {
-                    if (eat('+')) x += parseTerm();
-                    else if (eat('-')) x -= parseTerm();
-                    else return x;
-                }
-            }
-
-            double parseTerm() {
-                double x = parseFactor();
-                for (;;) {
-                    if (eat('*')) x *= parseFactor();
-                    else if (eat('/')) x /= parseFactor();
-                    else return x;
-                }
-            }
-
-            double parseFactor() {
-                if (eat('+')) return parseFactor();
-                if (eat('-')) return -parseFactor();
-
-                double x;
-                int startPos = this.pos;
-                if (eat('(')) {
-                    x = parseExpression();
-                    eat(')');
-                } else if ((ch >= '0' && ch <= '9') || ch == '.') {
-                    while ((ch >= '0' && ch <= '9') || ch == '.') nextChar();
-                    x = Double.parseDouble(expr.substring(startPos, this.pos));
-                } else {
-                    throw new RuntimeException("Unexpected: " + (char) ch);
-                }
-
-                return x;
-            }
-        }.parse();
-    }
     //==================================================
 
     public void fillColumnWithFormula(int columnIndex, String formula) {
-        for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
-            String replaced = replaceCellReferences(formula, rowIndex);
-            String result = evaluateFormula(replaced);
+        Expression expr;
+        try {
+            expr = compiledFormula(formula);
+        } catch (RuntimeException e) {
+            expr = null;
+        }
+        for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
+            String result = expr == null ? "#ERR" : evaluateSameRow(expr, rowIndex);
             setCell(rowIndex, columnIndex, result);
         }
     }
@@ -306,78 +849,88 @@ public class Sheet {
 
     // ✅ Filtrar acumulativamente sobre el resultado actual
     public void filterByColumn(int columnIndex, String condition) {
-        if (originalRows == null) {
-            originalRows = new ArrayList<>(rows); // guarda la primera vez
-        }
-
-        List<String[]> filtered = new ArrayList<>();
-
-        String operator = "";
-        String valueStr = condition.replaceAll("^[><=!]+", "").trim();
-        double valueNum = 0;
-        boolean isNumeric = valueStr.matches("-?\\d+(\\.\\d+)?");
+        // Solo se guardan índices de fila: no se copian las filas
+        int[] filtered = new int[16];
+        int filteredCount = 0;
 
-        if (isNumeric) valueNum = Double.parseDouble(valueStr);
-
-        if (condition.startsWith(">=")) operator = ">=";
-        else if (condition.startsWith("<=")) operator = "<=";
-        else if (condition.startsWith(">")) operator = ">";
-        else if (condition.startsWith("<")) operator = "<";
-        else if (condition.startsWith("==")) operator = "==";
-        else if (condition.startsWith("!=")) operator = "!=";
-        else {
+        Condition cond = Condition.parse(columnIndex, condition);
+        if (cond == null) {
             System.out.println("❌ Condición inválida: " + condition);
             return;
         }
 
-        for (String[] row : rows) {
-            if (columnIndex >= row.length) continue;
-            String cell = row[columnIndex];
-            boolean matches = false;
-
-            if (isNumeric) {
-                try {
-                    double cellVal = Double.parseDouble(cell);
-                    matches = switch (operator) {
-                        case ">" -> cellVal > valueNum;
-                        case "<" -> cellVal < valueNum;
-                        case ">=" -> cellVal >= valueNum;
-                        case "<=" -> cellVal <= valueNum;
-                        case "==" -> cellVal == valueNum;
-                        case "!=" -> cellVal != valueNum;
-                        default -> false;
-                    };
-                } catch (NumberFormatException e) {
-                    matches = false;
-                }
-            } else {
-                matches = switch (operator) {
-                    case "==" -> cell.equalsIgnoreCase(valueStr);
-                    case "!=" -> !cell.equalsIgnoreCase(valueStr);
-                    default -> false;
-                };
+        // En columnas numéricas se compara con el valor ya parseado, en las
+        // codificadas se evalúa una vez cada valor distinto y se mira el
+        // código, y fuera del heap se prueban los bytes sin armar el texto
+        double[] values = cond.isNumeric() ? numericColumn(columnIndex) : null;
+        Column column = values == null ? storedColumn(columnIndex) : null;
+        DictColumn dict = column instanceof DictColumn ? (DictColumn) column : null;
+        OffHeapColumn offHeap = column instanceof OffHeapColumn ? (OffHeapColumn) column : null;
+        int[] codes = dict == null ? null : dict.codes();
+        boolean[] byCode = dict == null ? null : dict.matches(cond);
+
+        for (int r = 0; r < getRowCount(); r++) {
+            int base = baseRow(r);
+            boolean matches;
+            if (values != null && !isHeaderRow(base) && base < values.length) matches = cond.testNumber(values[base]);
+            else if (codes != null) matches = byCode[base < codes.length ? codes[base] : 0];
+            else if (offHeap != null) {
+                int t = offHeap.test(base, cond);
+                matches = t < 0 ? matchesCell(cond, base) : t == 1;
             }
+            else matches = matchesCell(cond, base);
 
-            if (matches) filtered.add(row);
+            if (matches) {
+                if (filteredCount == filtered.length) filtered = Arrays.copyOf(filtered, filteredCount * 2);
+                filtered[filteredCount++] = base;
+            }
         }
 
-        // Sustituye filas actuales por las filtradas
-        rows.clear();
-        rows.addAll(filtered);
+        // Sustituye filas visibles por las filtradas
+        visible = filtered;
+        visibleCount = filteredCount;
+        filters.add(cond);
+    }
+
+    private boolean matchesCell(Condition cond, int base) {
+        String text = cellText(base, cond.getColumn());
+        return text != null && cond.test(text);
+    }
+
+    // ✅ Filtrar por archivo de origen (==data-2026-10-01.csv, !=...).
+    // Devuelve false si la condición no es válida (la avisa quien llama:
+    // con la terminal en modo raw no se puede imprimir)
+    public boolean filterBySource(String condition) {
+        Condition cond = Condition.parse(-1, condition);
+        if (cond == null) return false;
+
+        int[] filtered = new int[16];
+        int filteredCount = 0;
+        for (int r = 0; r < getRowCount(); r++) {
+            int base = baseRow(r);
+            if (cond.test(sourceName(base))) {
+                if (filteredCount == filtered.length) filtered = Arrays.copyOf(filtered, filteredCount * 2);
+                filtered[filteredCount++] = base;
+            }
+        }
+        visible = filtered;
+        visibleCount = filteredCount;
+        sourceFilters.add(cond);
+        return true;
     }
 
     // ✅ Restaurar todo el dataset original
     public void clearFilter() {
-        if (originalRows != null) {
-            rows.clear();
-            rows.addAll(originalRows);
-            originalRows = null;
-        }
+        visible = null;
+        visibleCount = 0;
+        filters.clear();
+        sourceFilters.clear();
     }
 
     public boolean isColumnEmpty(int colIndex) {
-        for (String[] row : rows) {
-            if (colIndex < row.length && !row[colIndex].trim().isEmpty()) {
+        for (int r = 0; r < getRowCount(); r++) {
+            String text = cellText(baseRow(r), colIndex);
+            if (text != null && !text.trim().isEmpty()) {
                 return false;
             }
         }
@@ -388,88 +941,62 @@ public class Sheet {
     // Nuevo applyFormulaToColumn: recibe la fila de origen (sourceRow)
     public void applyFormulaToColumn(int columnIndex, int sourceRow, String formula) {
         if (formula == null || !formula.startsWith("=")) return;
+        Expression expr;
+        try {
+            expr = compiledFormula(formula);
+        } catch (RuntimeException e) {
+            expr = null;
+        }
 
-        for (int targetRow = 0; targetRow < rows.size(); targetRow++) {
-            try {
-                // 1) Ajusta los números de fila de las referencias según la diferencia de filas
-                String shifted = shiftRowNumbersInFormula(formula, sourceRow, targetRow);
-
-                // 2) Reemplaza referencias por valores (evalúa celdas referenciadas)
-                String replaced = replaceCellReferencesForEvaluation(shifted, targetRow, columnIndex);
-
-                // 3) Evalúa la fórmula resultante (evaluateFormula ya maneja el '=').
-                String result = evaluateFormula(replaced);
-
-                // 4) Guarda el resultado en la columna objetivo
-                // Asegúrate de que la fila tenga suficientes columnas (normalizar si es necesario)
-                String[] rowArr = rows.get(targetRow);
-                if (columnIndex >= rowArr.length) {
-                    String[] newRow = new String[columnIndex + 1];
-                    System.arraycopy(rowArr, 0, newRow, 0, rowArr.length);
-                    for (int k = rowArr.length; k < newRow.length; k++) newRow[k] = "";
-                    rows.set(targetRow, newRow);
+        for (int targetRow = 0; targetRow < getRowCount(); targetRow++) {
+            int base = baseRow(targetRow);
+            String result = "#ERR";
+            if (expr != null) {
+                // Las referencias se desplazan según la diferencia de filas
+                // (A1 escrita en la fila 1 es A5 en la fila 5)
+                int target = targetRow;
+                int delta = targetRow - sourceRow;
+                try {
+                    result = String.valueOf(expr.eval((c, r) -> {
+                        if (r == 0) throw new IllegalArgumentException("Referencia sin fila");
+                        return referencedValue(Math.max(1, r + delta) - 1, c, target, columnIndex);
+                    }));
+                } catch (RuntimeException e) {
+                    result = "#ERR";
                 }
-                rows.get(targetRow)[columnIndex] = result;
-            } catch (Exception e) {
-                rows.get(targetRow)[columnIndex] = "#ERR";
             }
+            // Guarda el resultado en la columna objetivo
+            setResult(base, columnIndex, result);
         }
     }
 
-    // Ajusta los números de fila en todas las referencias tipo A1, B12, AA3, etc.
-    // por el delta = targetRow - sourceRow
-    private String shiftRowNumbersInFormula(String formula, int sourceRow, int targetRow) {
-        Matcher m = Pattern.compile("([A-Za-z]+)(\\d+)").matcher(formula);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String col = m.group(1);
-            int refRow = Integer.parseInt(m.group(2)); // 1-based
-            int newRow = refRow + (targetRow - sourceRow);
-            if (newRow < 1) newRow = 1; // evitar filas < 1
-            m.appendReplacement(sb, col + newRow);
-        }
-        m.appendTail(sb);
-        return sb.toString();
-    }
-
-    // Reemplaza referencias (A2, B3, ...) por el valor evaluado de esa celda.
+    // Valor de la celda referenciada (ya evaluada si es otra fórmula).
     // targetRow = fila donde se está evaluando la fórmula (0-based).
     // fillingColumn = columna que estamos llenando (usada para evitar circularidad simple).
-    private String replaceCellReferencesForEvaluation(String formula, int targetRow, int fillingColumn) {
-        Matcher m = Pattern.compile("([A-Za-z]+)(\\d+)").matcher(formula);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String colLetters = m.group(1);
-            int rowNum = Integer.parseInt(m.group(2)); // 1-based
-            int refRowIndex = rowNum - 1;
-            int refColIndex = columnToIndex(colLetters);
-
-            String val = "0";
-            if (refRowIndex >= 0 && refRowIndex < rows.size() && refColIndex >= 0 && refColIndex < getColCount()) {
-                // Evitar referencia circular simple (misma celda que estamos llenando)
-                if (refRowIndex == targetRow && refColIndex == fillingColumn) {
-                    // política simple: tratar como 0 para evitar recursión infinita
-                    val = "0";
-                } else {
-                    // Usamos evaluateCell para permitir referencias anidadas (si la celda referenciada es otra fórmula).
-                    String ev = evaluateCell(refRowIndex, refColIndex);
-                    if (ev == null || ev.isEmpty()) ev = "0";
-                    // Si es numérico lo dejamos tal cual; si no, lo ponemos entre comillas para que JS pueda hacer comparaciones
-                    if (ev.matches("-?\\d+(\\.\\d+)?")) {
-                        val = ev;
-                    } else {
-                        val = "\"" + ev.replace("\"", "\\\"") + "\"";
-                    }
-                }
-            } else {
-                val = "0";
-            }
-
-            m.appendReplacement(sb, Matcher.quoteReplacement(val));
+    private double referencedValue(int refRow, int refCol, int targetRow, int fillingColumn) {
+        if (refRow < 0 || refRow >= getRowCount() || refCol < 0 || refCol >= getColCount()) return 0;
+        // Evitar referencia circular simple (misma celda que estamos llenando)
+        if (refRow == targetRow && refCol == fillingColumn) return 0;
+
+        int base = baseRow(refRow);
+        double[] values = numericColumn(refCol);
+        if (values != null && !isHeaderRow(base) && base < values.length) {
+            double v = values[base];
+            return Double.isNaN(v) ? 0 : v;
         }
-        m.appendTail(sb);
-        return sb.toString();
+        // evaluateCell permite referencias anidadas; un texto hace fallar la fórmula
+        String ev = evaluateCell(refRow, refCol);
+        return Expression.cellValue(ev);
     }
+
+    // Escribe el resultado copiando la fila, igual que setCell
+    private void setResult(int base, int columnIndex, String result) {
+        if (rows instanceof ColumnStore) ((ColumnStore) rows).setCell(base, columnIndex, result);
+        else writeRowCell(base, columnIndex, result, true);
+        dirtyRows.set(base);
+        numberChanged(base, columnIndex, result);
+    }
+
 //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~`````
 
 }
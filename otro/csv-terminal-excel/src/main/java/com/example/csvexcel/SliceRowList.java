@@ -0,0 +1,246 @@
+package com.example.csvexcel;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Filas de un CSV mapeado en memoria sin convertir las celdas a String:
+// de cada campo solo se guarda dónde empieza y termina dentro del archivo
+// (dos int por celda) y se decodifica recién cuando se lee (ver cell).
+// Las filas editadas y agregadas quedan en memoria (ver OverlayRowList).
+public class SliceRowList extends OverlayRowList {
+
+    private Segment[] segments;
+    private int[] firstRows; // primera fila de cada tramo, para buscar la fila
+    private int rowCount;
+    private int colCount;
+    private final Dialect dialect;
+    private RowIndex index;
+
+    private SliceRowList(Segment[] segments, Dialect dialect) {
+        this.dialect = dialect;
+        setSegments(segments);
+    }
+
+    // Copia que comparte los tramos mapeados
+    private SliceRowList(SliceRowList other) {
+        this.dialect = other.dialect;
+        this.segments = other.segments;
+        this.firstRows = other.firstRows;
+        this.rowCount = other.rowCount;
+        this.colCount = other.colCount;
+        this.index = other.index;
+    }
+
+    // Recorre el archivo en paralelo (un tramo mapeado por bloque) anotando
+    // los límites de cada campo
+    public static SliceRowList open(Path path, Dialect dialect, LoadProgress progress) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            long[] bounds = ParallelCsvParser.findBoundaries(ch, dialect.bomLength(), size,
+                    ParallelCsvParser.DEFAULT_CHUNK_SIZE, (byte) dialect.getQuote(), pool);
+
+            List<ForkJoinTask<Segment>> tasks = new ArrayList<>();
+            for (int k = 0; k + 1 < bounds.length; k++) {
+                long from = bounds[k];
+                long to = bounds[k + 1];
+                tasks.add(pool.submit(() -> scanSegment(ch, from, to, dialect)));
+            }
+
+            Segment[] segments = new Segment[tasks.size()];
+            long rows = 0;
+            for (int k = 0; k < segments.length; k++) {
+                segments[k] = tasks.get(k).join();
+                rows += segments[k].rows;
+                if (progress != null) progress.update(rows, CsvReader.rowsPerSecond(rows, start));
+            }
+            if (rows >= Integer.MAX_VALUE) throw new IOException("Demasiadas filas: " + rows);
+            return new SliceRowList(segments, dialect);
+        }
+    }
+
+    private void setSegments(Segment[] segments) {
+        this.segments = segments;
+        firstRows = new int[segments.length];
+        int rows = 0;
+        int cols = 0;
+        for (int k = 0; k < segments.length; k++) {
+            firstRows[k] = rows;
+            rows += segments[k].rows;
+            cols = Math.max(cols, segments[k].maxCols);
+        }
+        rowCount = rows;
+        colCount = cols;
+
+        // offsets de cada fila en el archivo, para guardar solo lo que cambió
+        long[] offsets = new long[rows + 1];
+        int n = 0;
+        long end = dialect.bomLength();
+        for (Segment s : segments) {
+            for (int r = 0; r < s.rows; r++) offsets[n++] = s.offset + s.rowStarts[r];
+            end = s.offset + s.rowStarts[s.rows];
+        }
+        offsets[n] = end;
+        index = new RowIndex(LongBuffer.wrap(offsets), cols);
+    }
+
+    public int getColCount() { return colCount; }
+
+    // Posición de cada fila en el archivo mapeado
+    public RowIndex getIndex() { return index; }
+
+    @Override
+    public SliceRowList snapshot() {
+        return copyOverlayTo(new SliceRowList(this));
+    }
+
+    // Pasa a leer del archivo recién guardado; solo quedan en memoria las
+    // filas marcadas en 'keep' y las que no llegaron a guardarse
+    public void rebase(Path path, BitSet keep) throws IOException {
+        SliceRowList saved = open(path, dialect, null);
+        rebaseOverlay(saved.rowCount, keep);
+        setSegments(saved.segments);
+    }
+
+    @Override
+    protected int baseSize() {
+        return rowCount;
+    }
+
+    @Override
+    protected String[] readRow(int row) {
+        Segment s = segmentOf(row);
+        int r = row - firstRows[segmentIndex(row)];
+        int first = s.rowCells[r];
+        int fields = s.rowCells[r + 1] - first;
+        String[] values = new String[Math.max(fields, colCount)];
+        for (int c = 0; c < values.length; c++) values[c] = c < fields ? s.decode(first + c, dialect) : "";
+        return values;
+    }
+
+    // Decodifica solo la celda pedida (null si la fila no llega a esa columna)
+    @Override
+    public String cell(int row, int col) {
+        if (row >= rowCount || edited.containsKey(row)) return super.cell(row, col);
+        if (row < 0 || col < 0) return null;
+        Segment s = segmentOf(row);
+        int r = row - firstRows[segmentIndex(row)];
+        int first = s.rowCells[r];
+        if (col < s.rowCells[r + 1] - first) return s.decode(first + col, dialect);
+        return col < colCount ? "" : null;
+    }
+
+    private Segment segmentOf(int row) {
+        return segments[segmentIndex(row)];
+    }
+
+    private int segmentIndex(int row) {
+        int k = Arrays.binarySearch(firstRows, row);
+        if (k < 0) return -k - 2;
+        // tramos vacíos comparten la primera fila con el siguiente
+        while (k + 1 < firstRows.length && firstRows[k + 1] == row) k++;
+        return k;
+    }
+
+    private static Segment scanSegment(FileChannel ch, long from, long to, Dialect dialect) throws IOException {
+        Segment s = new Segment(from, to > from ? ch.map(FileChannel.MapMode.READ_ONLY, from, to - from) : null);
+        if (s.buf == null) {
+            s.finish(0);
+            return s;
+        }
+        CsvByteParser parser = new CsvByteParser(dialect);
+        int limit = s.buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            s.startRow(pos);
+            pos = parser.scan(s.buf, pos, limit);
+            for (int i = 0; i < parser.getFieldCount(); i++) {
+                s.addCell(parser.fieldStart(i), parser.fieldEnd(i), parser.isEscaped(i));
+            }
+            s.maxCols = Math.max(s.maxCols, parser.getFieldCount());
+        }
+        s.finish(limit);
+        return s;
+    }
+
+    // Un bloque del archivo mapeado y los límites de sus campos (relativos al bloque)
+    private static class Segment {
+        final long offset;
+        final MappedByteBuffer buf;
+        int rows = 0;
+        int cells = 0;
+        int maxCols = 0;
+        int[] rowStarts = new int[1024]; // byte donde empieza cada fila (+1 al final)
+        int[] rowCells = new int[1024];  // primer campo de cada fila (+1 al final)
+        int[] starts = new int[4096];
+        int[] ends = new int[4096];
+        final BitSet escaped = new BitSet(); // campos con comillas duplicadas ("")
+
+        Segment(long offset, MappedByteBuffer buf) {
+            this.offset = offset;
+            this.buf = buf;
+        }
+
+        void startRow(int pos) {
+            if (rows + 1 >= rowStarts.length) {
+                rowStarts = Arrays.copyOf(rowStarts, rowStarts.length * 2);
+                rowCells = Arrays.copyOf(rowCells, rowCells.length * 2);
+            }
+            rowStarts[rows] = pos;
+            rowCells[rows] = cells;
+            rows++;
+        }
+
+        void addCell(int start, int end, boolean esc) {
+            if (cells == starts.length) {
+                starts = Arrays.copyOf(starts, cells * 2);
+                ends = Arrays.copyOf(ends, cells * 2);
+            }
+            if (esc) escaped.set(cells);
+            starts[cells] = start;
+            ends[cells++] = end;
+        }
+
+        // Cierra la última fila y recorta los arreglos a lo usado
+        void finish(int limit) {
+            rowStarts = Arrays.copyOf(rowStarts, rows + 1);
+            rowCells = Arrays.copyOf(rowCells, rows + 1);
+            rowStarts[rows] = limit;
+            rowCells[rows] = cells;
+            starts = Arrays.copyOf(starts, cells);
+            ends = Arrays.copyOf(ends, cells);
+        }
+
+        // Lecturas absolutas sobre el búfer: se puede usar desde varios hilos
+        // (la copia que se guarda en segundo plano comparte los tramos)
+        String decode(int cell, Dialect dialect) {
+            int len = ends[cell] - starts[cell];
+            if (len == 0) return "";
+            byte[] bytes = new byte[len];
+            buf.get(starts[cell], bytes, 0, len);
+            Charset charset = dialect.getCharset();
+            if (!escaped.get(cell)) return new String(bytes, charset);
+
+            // quita las comillas duplicadas ("" -> ")
+            byte quote = (byte) dialect.getQuote();
+            int out = 0;
+            for (int k = 0; k < len; k++) {
+                bytes[out++] = bytes[k];
+                if (bytes[k] == quote && k + 1 < len && bytes[k + 1] == quote) k++;
+            }
+            return new String(bytes, 0, out, charset);
+        }
+    }
+}
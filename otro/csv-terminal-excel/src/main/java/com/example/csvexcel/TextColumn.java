@@ -0,0 +1,38 @@
+package com.example.csvexcel;
+
+import java.util.Arrays;
+
+// Columna de texto: un arreglo con el valor de cada fila. Las filas que
+// están más allá del arreglo están vacías, así una columna nueva no ocupa
+// memoria hasta que se escribe algo en ella.
+public class TextColumn extends Column {
+
+    private String[] values;
+
+    public TextColumn() {
+        this(new String[0]);
+    }
+
+    TextColumn(String[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public String get(int row) {
+        return row < values.length ? values[row] : null;
+    }
+
+    @Override
+    public void set(int row, String value) {
+        if (row >= values.length) {
+            if (value == null || value.isEmpty()) return; // ya está vacía
+            values = Arrays.copyOf(values, Math.max(row + 1, Math.max(16, values.length * 2)));
+        }
+        values[row] = value;
+    }
+
+    @Override
+    public Column copy() {
+        return new TextColumn(values.clone());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pruebas de la carga en segundo plano: la hoja termina igual que con
+ * readCsv, con el tipo de cada columna ya inferido, y las columnas se arman
+ * en el hilo de la carga.
+ */
+public class BackgroundLoaderTest extends TestCase {
+
+    private static Sheet load(Path file) throws Exception {
+        return load(new Sheet(), file);
+    }
+
+    private static Sheet load(Sheet sheet, Path file) throws Exception {
+        BackgroundLoader loader = new BackgroundLoader(sheet, file, null);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (loader.isLoading()) {
+            assertTrue("la carga no termina", System.currentTimeMillis() < deadline);
+            loader.poll();
+            Thread.sleep(5);
+        }
+        assertTrue(loader.getMessage(), loader.isComplete());
+        return sheet;
+    }
+
+    public void testSameAsReadCsv() throws Exception {
+        Path file = Files.createTempFile("segundo-plano", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder("id,pais,nota\n");
+            for (int i = 0; i < 50_000; i++) {
+                sb.append(i).append(',').append(i % 3 == 0 ? "peru" : "\"chile, sur\"").append(',')
+                  .append(i % 10).append(".5\n");
+            }
+            sb.append("corta\n");
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            Sheet expected = CsvReader.readCsv(file.toString());
+            Sheet sheet = load(file);
+            assertEquals("filas", expected.getRowCount(), sheet.getRowCount());
+            assertEquals("columnas", expected.getColCount(), sheet.getColCount());
+            for (int c = 0; c < expected.getColCount(); c++) {
+                assertEquals("tipo columna " + c, expected.getColumnType(c), sheet.getColumnType(c));
+            }
+            for (int r = 0; r < expected.getRowCount(); r += 997) {
+                for (int c = 0; c < expected.getColCount(); c++) {
+                    assertEquals("celda " + r + "," + c, expected.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+                }
+            }
+            assertEquals("fila corta", "", sheet.getCell(sheet.getRowCount() - 1, 2).getValue());
+            assertEquals("asociada al archivo", file, sheet.getSourcePath());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSettleOnLoaderThread() throws Exception {
+        Path file = Files.createTempFile("segundo-plano", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder("id,pais,nombre\n");
+            for (int i = 0; i < Sheet.SETTLE_ROWS + 5000; i++) {
+                sb.append(i).append(',').append(i % 2 == 0 ? "peru" : "chile").append(",n").append(i).append('\n');
+            }
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            List<String> threads = new CopyOnWriteArrayList<>();
+            Sheet sheet = load(new Sheet() {
+                @Override
+                Column[] settleColumns() {
+                    threads.add(Thread.currentThread().getName());
+                    return super.settleColumns();
+                }
+            }, file);
+            assertEquals("una vez, en el hilo de la carga", List.of("carga"), threads);
+
+            Sheet expected = CsvReader.readCsv(file.toString());
+            assertEquals("filas", expected.getRowCount(), sheet.getRowCount());
+            for (int c = 0; c < expected.getColCount(); c++) {
+                assertEquals("tipo columna " + c, expected.getColumnType(c), sheet.getColumnType(c));
+            }
+            assertTrue("id numérica", sheet.storedColumn(0) instanceof NumericColumn);
+            assertTrue("pais codificada", sheet.storedColumn(1) instanceof DictColumn);
+            for (int r = 0; r < sheet.getRowCount(); r += 331) {
+                for (int c = 0; c < 3; c++) {
+                    assertEquals("celda " + r + "," + c, expected.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas del guardado en segundo plano: se guarda la hoja como estaba al
+ * empezar, lo editado mientras tanto queda para el próximo guardado y al
+ * terminar las columnas dejan de estar compartidas con la copia.
+ */
+public class BackgroundSaverTest extends TestCase {
+
+    public void testSnapshotAndRelease() throws Exception {
+        Path file = Files.createTempFile("segundo-plano", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder("id,nombre\n");
+            for (int i = 0; i < 20_000; i++) sb.append(i).append(",n").append(i).append('\n');
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            BackgroundSaver saver = new BackgroundSaver(sheet);
+
+            assertTrue(saver.start(file));
+            // la primera edición copia la columna: la copia que se guarda no cambia
+            Column before = sheet.storedColumn(1);
+            sheet.setCell(5, 1, "durante");
+            assertNotSame(before, sheet.storedColumn(1));
+            assertEquals("Guardado en " + file, saver.await());
+            String saved = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertEquals("se guardó lo de antes", sb.toString(), saved);
+
+            // terminado el guardado, las columnas se escriben en el lugar
+            for (int c = 0; c < 2; c++) {
+                Column column = sheet.storedColumn(c);
+                sheet.setCell(7, c, "x" + c);
+                assertSame("columna " + c, column, sheet.storedColumn(c));
+            }
+
+            // lo editado durante el guardado va en el siguiente
+            assertTrue(saver.start(file));
+            saver.await();
+            Sheet reread = CsvReader.readCsv(file.toString());
+            assertEquals("durante", reread.getCell(5, 1).getValue());
+            assertEquals("x1", reread.getCell(7, 1).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testDuplicatedColumnStaysShared() {
+        ColumnStore store = new ColumnStore();
+        store.add(0, new String[]{"a"});
+        store.duplicateColumn(0);
+        ColumnStore snapshot = store.snapshot();
+        snapshot.release();
+
+        // la duplicada sigue compartida con la original
+        store.setCell(0, 1, "b");
+        assertEquals("a", store.cell(0, 0));
+        assertEquals("b", store.cell(0, 1));
+        Column original = store.column(0);
+        store.setCell(0, 0, "c");
+        assertSame("ya no la comparte nadie", original, store.column(0));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pruebas del modo sin terminal: filtros, fórmulas y --cols en orden, la
+ * entrada desde stdin o desde un .gz y el encabezado (o --no-header).
+ * Se compara la salida completa que queda en stdout.
+ */
+public class BatchModeTest extends TestCase {
+
+    private static final String DATA =
+            "id,nombre,monto\n"
+            + "1,ana,10\n"
+            + "2,luis,45\n"
+            + "3,\"paz, rosa\",60\n"
+            + "4,eva,5\n";
+
+    private PrintStream oldOut;
+    private InputStream oldIn;
+    private ByteArrayOutputStream out;
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        oldOut = System.out;
+        oldIn = System.in;
+        out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, "UTF-8"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        System.setOut(oldOut);
+        System.setIn(oldIn);
+        if (file != null) Files.deleteIfExists(file);
+    }
+
+    private String run(String... args) {
+        assertEquals("código de salida", 0, BatchMode.run(args));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String csv() throws Exception {
+        file = Files.createTempFile("batch", ".csv");
+        Files.write(file, DATA.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    public void testCopyWithoutSteps() throws Exception {
+        assertEquals("sin pasos la salida es la entrada", DATA, run("--batch", csv()));
+    }
+
+    public void testFilterFormulaAndCols() throws Exception {
+        String result = run("--batch", csv(), "--filter", "C>30", "--formula", "D==C*2", "--cols", "B,D");
+        assertEquals("nombre,\n"
+                + "luis,90.0\n"
+                + "\"paz, rosa\",120.0\n", result);
+    }
+
+    public void testStepsRunInOrder() throws Exception {
+        // la fórmula cambia C antes del filtro, así que filtra el valor nuevo
+        String result = run("--batch", csv(), "--formula", "C==C*10", "--filter", "C>400", "--cols", "A,C");
+        assertEquals("id,monto\n2,450.0\n3,600.0\n", result);
+    }
+
+    public void testQuoteAll() throws Exception {
+        String result = run("--batch", csv(), "--filter", "A==4", "--quote-all");
+        assertEquals("\"id\",\"nombre\",\"monto\"\n\"4\",\"eva\",\"5\"\n", result);
+    }
+
+    public void testStdin() throws Exception {
+        System.setIn(new ByteArrayInputStream(DATA.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("id\n3\n", run("--batch", "-", "--filter", "C>50", "--cols", "A"));
+    }
+
+    public void testStdinWithoutFilename() throws Exception {
+        System.setIn(new ByteArrayInputStream(DATA.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("nombre\nana\n", run("--batch", "--filter", "A==1", "--cols", "B"));
+    }
+
+    public void testGzipInput() throws Exception {
+        file = Files.createTempFile("batch", ".csv.gz");
+        try (OutputStream gz = new GZIPOutputStream(Files.newOutputStream(file))) {
+            gz.write(DATA.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("id,monto\n1,10\n4,5\n", run("--batch", file.toString(), "--filter", "C<30", "--cols", "A,C"));
+    }
+
+    public void testNoHeader() throws Exception {
+        file = Files.createTempFile("batch", ".csv");
+        Files.write(file, "5,x\n50,y\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("con encabezado la primera fila pasa sin filtrar",
+                "5,x\n50,y\n", run("--batch", file.toString(), "--filter", "A>10"));
+        out.reset();
+        assertEquals("con --no-header la primera fila también se filtra",
+                "50,y\n", run("--batch", file.toString(), "--no-header", "--filter", "A>10"));
+    }
+
+    public void testInvalidOptions() throws Exception {
+        String name = csv();
+        PrintStream oldErr = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"));
+        try {
+            assertEquals("filtro inválido", 2, BatchMode.run(new String[] {"--batch", name, "--filter", "zz"}));
+            assertEquals("columna inválida", 2, BatchMode.run(new String[] {"--batch", name, "--cols", "A,1"}));
+            assertEquals("opción desconocida", 2, BatchMode.run(new String[] {"--batch", name, "--nada"}));
+            assertEquals("nada en stdout", 0, out.size());
+        } finally {
+            System.setErr(oldErr);
+        }
+    }
+}
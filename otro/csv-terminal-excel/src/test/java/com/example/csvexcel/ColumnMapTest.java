@@ -0,0 +1,173 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Pruebas de las columnas en hojas que leen del archivo (lazy, sin copia y
+ * .csvx): insertar, borrar y duplicar columnas, editar y guardar deja las
+ * mismas celdas que hacer lo mismo en una hoja en memoria.
+ */
+public class ColumnMapTest extends TestCase {
+
+    private static String csv() {
+        String[] cities = {"Lima", "Cusco", "Ica", "\"Arequipa, centro\""};
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder("id,name,age,city\n");
+        for (int i = 0; i < 60; i++) {
+            sb.append(i).append(",n").append(i).append(',').append(random.nextInt(90)).append(',')
+              .append(cities[random.nextInt(cities.length)]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void same(String what, Sheet expected, Sheet sheet) {
+        assertEquals(what + " filas", expected.getRowCount(), sheet.getRowCount());
+        assertEquals(what + " columnas", expected.getColCount(), sheet.getColCount());
+        for (int r = 0; r < expected.getRowCount(); r++) {
+            for (int c = 0; c < expected.getColCount(); c++) {
+                assertEquals(what + " celda " + r + "," + c, expected.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+            }
+        }
+    }
+
+    private static Sheet open(String mode, Path file) throws Exception {
+        switch (mode) {
+            case "lazy": return CsvReader.openLazy(file.toString(), null);
+            case "zero": return CsvReader.openZeroCopy(file.toString(), null);
+            default: return CsvReader.readCsv(file.toString());
+        }
+    }
+
+    private static Path work(Path dir, String mode, Path source) throws Exception {
+        Path file = dir.resolve(mode.equals("csvx") ? "hoja.csvx" : "hoja.csv");
+        if (mode.equals("csvx")) CsvReader.writeCsv(CsvReader.readCsv(source.toString()), file.toString());
+        else Files.copy(source, file);
+        return file;
+    }
+
+    private static void deleteAll(Path dir) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) Files.delete(f);
+        }
+        Files.delete(dir);
+    }
+
+    // Las mismas operaciones al azar en las dos hojas, guardando de a ratos
+    private static void randomOps(String mode, long seed) throws Exception {
+        Path dir = Files.createTempDirectory("columnas");
+        try {
+            Path source = dir.resolve("origen.csv");
+            Files.write(source, csv().getBytes(StandardCharsets.UTF_8));
+            Path file = work(dir, mode, source);
+            Sheet sheet = open(mode, file);
+            Sheet mem = CsvReader.readCsv(source.toString());
+            Random random = new Random(seed);
+            String what = mode + " semilla " + seed;
+
+            for (int step = 0; step < 300; step++) {
+                int cols = mem.getColCount();
+                int col = cols == 0 ? 0 : random.nextInt(cols);
+                int row = random.nextInt(Math.max(1, mem.getRowCount()));
+                String v = random.nextBoolean() ? "v" + step : String.valueOf(random.nextInt(100));
+                switch (random.nextInt(12)) {
+                    case 0: sheet.addColumnAt(col); mem.addColumnAt(col); break;
+                    case 1:
+                        if (cols > 1) {
+                            sheet.removeColumnAt(col);
+                            mem.removeColumnAt(col);
+                        }
+                        break;
+                    case 2: sheet.duplicateColumnAt(col); mem.duplicateColumnAt(col); break;
+                    case 3: sheet.addColumn(); mem.addColumn(); break;
+                    case 4: case 5: case 6: sheet.setCell(row, col, v); mem.setCell(row, col, v); break;
+                    case 7:
+                        if (random.nextInt(4) == 0) {
+                            sheet.clearFilter();
+                            mem.clearFilter();
+                            CsvReader.writeCsv(sheet, file.toString());
+                            same(what + " guardada en " + step, mem, sheet);
+                        }
+                        break;
+                    case 8:
+                        if (random.nextInt(6) == 0) {
+                            String f = "=A" + (row + 1) + "+1";
+                            sheet.setCell(row, col, f);
+                            mem.setCell(row, col, f);
+                        }
+                        break;
+                    case 10: {
+                        String f = random.nextBoolean() ? "==Lima" : ">40";
+                        sheet.filterByColumn(col, f);
+                        mem.filterByColumn(col, f);
+                        break;
+                    }
+                    case 11: sheet.clearFilter(); mem.clearFilter(); break;
+                    default: sheet.setCell(row, col, ""); mem.setCell(row, col, ""); break;
+                }
+                if (step % 25 == 0) same(what + " paso " + step, mem, sheet);
+            }
+            sheet.clearFilter();
+            mem.clearFilter();
+            CsvReader.writeCsv(sheet, file.toString());
+            same(what + " al releer", mem, CsvReader.readCsv(file.toString()));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    public void testRandomOperations() throws Exception {
+        for (String mode : new String[]{"lazy", "zero", "csvx"}) {
+            for (long seed = 1; seed <= 4; seed++) randomOps(mode, seed);
+        }
+    }
+
+    public void testColumnsThenSaveSameBytes() throws Exception {
+        for (String mode : new String[]{"lazy", "zero"}) {
+            Path dir = Files.createTempDirectory("columnas");
+            try {
+                Path source = dir.resolve("origen.csv");
+                String text = csv();
+                Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+                Path file = work(dir, mode, source);
+
+                // sin cambios se guarda igual
+                Sheet sheet = open(mode, file);
+                CsvReader.writeCsv(sheet, file.toString());
+                assertEquals(mode, text, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+                // columna insertada y borrada, duplicada y borrada: lo mismo
+                sheet.addColumnAt(1);
+                sheet.setCell(3, 1, "temporal");
+                sheet.duplicateColumnAt(3);
+                sheet.removeColumnAt(1);
+                sheet.removeColumnAt(3);
+                CsvReader.writeCsv(sheet, file.toString());
+                assertEquals(mode + " ida y vuelta", text, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+                // con una columna nueva, la misma salida que la hoja en memoria
+                Sheet mem = CsvReader.readCsv(source.toString());
+                for (Sheet s : new Sheet[]{sheet, mem}) {
+                    s.duplicateColumnAt(0);
+                    s.removeColumnAt(2);
+                    s.addColumnAt(1);
+                    s.setCell(5, 1, "nuevo, con coma");
+                }
+                Path expected = dir.resolve("esperado.csv");
+                CsvReader.writeCsv(mem, expected.toString());
+                CsvReader.writeCsv(sheet, file.toString());
+                assertEquals(mode + " con columnas cambiadas",
+                        new String(Files.readAllBytes(expected), StandardCharsets.UTF_8),
+                        new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                same(mode + " al releer", mem, open(mode, file));
+            } finally {
+                deleteAll(dir);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.csvexcel;
+
+import com.opencsv.CSVWriter;
+import junit.framework.TestCase;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pruebas del codificador: debe escribir lo mismo que CSVWriter, tanto con
+ * comillas en todos los campos como solo en los que las necesitan.
+ */
+public class CsvEncoderTest extends TestCase {
+
+    private static final String[][] ROWS = {
+            {"id", "nombre", "nota"},
+            {"1", "Doe, John", "dice \"hola\""},
+            {"2", "linea uno\nlinea dos", "cr\rsolo"},
+            {"3", "", ""},
+            {"4", "ñandú 😀", "€"},
+            {"5", "\"", "a;b"},
+    };
+
+    private static String expected(boolean quoteAll) throws Exception {
+        StringWriter out = new StringWriter();
+        try (CSVWriter writer = new CSVWriter(out)) {
+            for (String[] row : ROWS) writer.writeNext(row, quoteAll);
+        }
+        return out.toString();
+    }
+
+    private static String encode(Dialect dialect) {
+        CsvEncoder encoder = new CsvEncoder(dialect);
+        for (String[] row : ROWS) encoder.encode(row);
+        return new String(encoder.buffer().array(), 0, encoder.size(), dialect.getCharset());
+    }
+
+    public void testQuoteAllLikeCsvWriter() throws Exception {
+        assertEquals(expected(true), encode(Dialect.DEFAULT.withQuoteAll(true)));
+    }
+
+    public void testMinimalQuotesLikeCsvWriter() throws Exception {
+        assertEquals(expected(false), encode(Dialect.DEFAULT));
+    }
+
+    public void testOtherDelimiterAndCharset() {
+        Dialect dialect = new Dialect(';', '"', StandardCharsets.ISO_8859_1, false, true);
+        CsvEncoder encoder = new CsvEncoder(dialect);
+        int bytes = encoder.encode(new String[]{"José", "a;b", "x,y"});
+        assertEquals("José;\"a;b\";x,y\n", new String(encoder.buffer().array(), 0, encoder.size(),
+                StandardCharsets.ISO_8859_1));
+        assertEquals("un byte por carácter en Latin-1", 15, bytes);
+    }
+
+    public void testGrowsBuffer() {
+        CsvEncoder encoder = new CsvEncoder(Dialect.DEFAULT);
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) big.append("\"é");
+        encoder.encode(new String[]{big.toString()});
+        String text = new String(encoder.buffer().array(), 0, encoder.size(), StandardCharsets.UTF_8);
+        assertEquals("\"" + big.toString().replace("\"", "\"\"") + "\"\n", text);
+    }
+}
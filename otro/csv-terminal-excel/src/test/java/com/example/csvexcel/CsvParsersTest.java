@@ -0,0 +1,80 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Pruebas de que la lectura en streaming (archivos chicos y .csv.gz) y la
+ * lectura en paralelo (archivos grandes) dan las mismas celdas: RFC 4180,
+ * sin carácter de escape y con el \r\n dentro de comillas tal cual.
+ */
+public class CsvParsersTest extends TestCase {
+
+    private static final String[] TEXTS = {
+            "a,b\n\"x\\\",y\\\\\n",
+            "a,b\n\"c:\\dir\\\",z\n",
+            "a,b\n\"uno \"\"dos\"\"\",\\n\n",
+            "a,b\r\n\"multi\r\nlínea\",\"\"\r\n\r\nfin,\"\"\"\"\r\n",
+            "a;b\n\"x\\\";y\\\\\n",
+    };
+
+    // Campos al azar con comillas, barras, separadores y saltos de línea
+    private static String random(long seed) {
+        Random random = new Random(seed);
+        String pieces = "ab\\\",;\r\n ñ";
+        StringBuilder sb = new StringBuilder("id,uno,dos\n");
+        for (int r = 0; r < 500; r++) {
+            sb.append(r);
+            for (int c = 0; c < 2; c++) {
+                StringBuilder field = new StringBuilder();
+                int len = random.nextInt(6);
+                for (int k = 0; k < len; k++) field.append(pieces.charAt(random.nextInt(pieces.length())));
+                String f = field.toString();
+                boolean quote = random.nextBoolean() || f.matches("(?s).*[\",\r\n].*");
+                sb.append(',').append(quote ? "\"" + f.replace("\"", "\"\"") + "\"" : f);
+            }
+            sb.append(r % 3 == 0 ? "\r\n" : "\n");
+        }
+        return sb.toString();
+    }
+
+    // Streaming contra en paralelo con bloques chicos
+    private static void sameCells(String text) throws Exception {
+        Path file = Files.createTempFile("parsers", ".csv");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            Sheet bytes = ParallelCsvParser.parse(file, 4096, null);
+            assertEquals(text + " filas", bytes.getRowCount(), sheet.getRowCount());
+            assertEquals(text + " columnas", bytes.getColCount(), sheet.getColCount());
+            for (int r = 0; r < sheet.getRowCount(); r++) {
+                for (int c = 0; c < sheet.getColCount(); c++) {
+                    assertEquals(text + " celda " + r + "," + c, bytes.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSameCells() throws Exception {
+        for (String text : TEXTS) sameCells(text);
+        for (long seed = 1; seed <= 5; seed++) sameCells(random(seed));
+    }
+
+    public void testBackslashIsText() throws Exception {
+        Path file = Files.createTempFile("parsers", ".csv");
+        try {
+            Files.write(file, "ruta,nota\n\"C:\\temp\\\",\"dice \\\"\"hola\\\"\"\"\n".getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals("C:\\temp\\", sheet.getCell(1, 0).getValue());
+            assertEquals("dice \\\"hola\\\"", sheet.getCell(1, 1).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
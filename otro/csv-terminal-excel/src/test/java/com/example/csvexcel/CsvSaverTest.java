@@ -0,0 +1,161 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Pruebas del guardado: copia incremental de las filas sin cambios,
+ * reemplazo atómico del archivo y guardado con un filtro activo.
+ */
+public class CsvSaverTest extends TestCase {
+
+    private static String csv(int rows) {
+        StringBuilder sb = new StringBuilder("id,nombre,nota\n");
+        for (int i = 1; i <= rows; i++) {
+            sb.append(i).append(",\"nombre ").append(i).append(", con coma\",").append(i % 7).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void testFilteredSaveKeepsSource() throws Exception {
+        Path file = Files.createTempFile("guardar", ".csv");
+        try {
+            String original = csv(50);
+            Files.write(file, original.getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            sheet.setCell(3, 2, "cambiada");
+            sheet.filterByColumn(2, "==1");
+            assertTrue("hay filas ocultas", sheet.getRowCount() < 51);
+
+            try {
+                CsvReader.writeCsv(sheet, file.toString());
+                fail("no debería guardar la vista filtrada sobre el origen");
+            } catch (IOException e) {
+                // esperado
+            }
+            assertEquals("el origen no cambia", original,
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+            // sin filtro se guardan todas las filas, con la edición incluida
+            sheet.clearFilter();
+            CsvReader.writeCsv(sheet, file.toString());
+            Sheet reread = CsvReader.readCsv(file.toString());
+            assertEquals("filas al releer", 51, reread.getRowCount());
+            assertEquals("celda editada", "cambiada", reread.getCell(3, 2).getValue());
+            assertEquals("última fila", "nombre 50, con coma", reread.getCell(50, 1).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testFilteredSaveToOtherFile() throws Exception {
+        Path file = Files.createTempFile("guardar", ".csv");
+        Path other = Files.createTempFile("filtradas", ".csv");
+        try {
+            Files.write(file, csv(50).getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            sheet.filterByColumn(2, "==1");
+            int visible = sheet.getRowCount();
+            // en otro archivo sí se puede guardar solo lo filtrado
+            CsvReader.writeCsv(sheet, other.toString());
+            assertEquals("filas filtradas", visible, CsvReader.readCsv(other.toString()).getRowCount());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(other);
+        }
+    }
+
+    public void testIncrementalSaveRoundTrip() throws Exception {
+        Path file = Files.createTempFile("incremental", ".csv");
+        try {
+            String original = csv(200);
+            Files.write(file, original.getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.openLazy(file.toString(), null);
+            sheet.setCell(10, 1, "dice \"hola\"");
+            assertTrue("se guarda copiando bytes", sheet.canSaveIncrementally());
+            CsvReader.writeCsv(sheet, file.toString());
+
+            // solo cambia la fila editada, el resto queda byte a byte igual
+            String expected = original.replace("10,\"nombre 10, con coma\",3\n", "10,\"dice \"\"hola\"\"\",3\n");
+            assertEquals("contenido guardado", expected,
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+            // después de guardar la hoja lee del archivo nuevo
+            sheet.setCell(20, 2, "x");
+            assertTrue("sigue siendo incremental", sheet.canSaveIncrementally());
+            CsvReader.writeCsv(sheet, file.toString());
+            Sheet reread = CsvReader.readCsv(file.toString());
+            assertEquals("primera edición", "dice \"hola\"", reread.getCell(10, 1).getValue());
+            assertEquals("segunda edición", "x", reread.getCell(20, 2).getValue());
+            assertEquals("fila sin cambios", "nombre 199, con coma", reread.getCell(199, 1).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testCrlfLineEndsKept() throws Exception {
+        Path file = Files.createTempFile("crlf", ".csv");
+        try {
+            // el último registro no termina en salto de línea
+            String original = csv(100).replace("\n", "\r\n");
+            original = original.substring(0, original.length() - 2);
+            Files.write(file, original.getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.openLazy(file.toString(), null);
+            assertEquals("\r\n", sheet.getDialect().getLineEnd());
+            sheet.setCell(10, 1, "editada");
+            sheet.addRow(new String[] {"101", "nueva", "0"});
+            assertTrue("se guarda copiando bytes", sheet.canSaveIncrementally());
+            CsvReader.writeCsv(sheet, file.toString());
+
+            String expected = original.replace("10,\"nombre 10, con coma\",3\r\n", "10,editada,3\r\n")
+                    + "\r\n101,nueva,0\r\n";
+            assertEquals("incremental", expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+            // reescribiendo todo pasa lo mismo
+            Sheet full = CsvReader.readCsv(file.toString());
+            full.setCell(20, 1, "otra");
+            assertFalse("se codifica todo", full.canSaveIncrementally());
+            CsvReader.writeCsv(full, file.toString());
+            String saved = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertEquals("completo", expected.replace("20,\"nombre 20, con coma\",6\r\n", "20,otra,6\r\n"), saved);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testFailedSaveKeepsPreviousFile() throws Exception {
+        Path file = Files.createTempFile("atomico", ".csv");
+        // un directorio con el nombre del temporal hace fallar la escritura
+        Path blocker = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            String original = csv(20);
+            Files.write(file, original.getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.openLazy(file.toString(), null);
+            sheet.setCell(5, 1, "nuevo");
+            Files.createDirectory(blocker);
+            try {
+                CsvReader.writeCsv(sheet, file.toString());
+                fail("el guardado debería fallar");
+            } catch (IOException e) {
+                // esperado
+            }
+            assertEquals("el archivo anterior queda intacto", original,
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            assertEquals("la edición sigue en la hoja", "nuevo", sheet.getCell(5, 1).getValue());
+
+            // al quitar el obstáculo se guarda normalmente
+            Files.deleteIfExists(blocker);
+            CsvReader.writeCsv(sheet, file.toString());
+            assertTrue("contiene la edición", Arrays.asList(
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8).split("\n")).contains("5,nuevo,5"));
+        } finally {
+            Files.deleteIfExists(blocker);
+            Files.deleteIfExists(file);
+        }
+    }
+}
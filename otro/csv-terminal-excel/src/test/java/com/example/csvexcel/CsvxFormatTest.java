@@ -0,0 +1,98 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas del formato .csvx: lo escrito se vuelve a abrir con las mismas
+ * celdas, un CSV que empieza con "CSVX" sigue siendo CSV y --export lo
+ * genera desde la línea de comandos.
+ */
+public class CsvxFormatTest extends TestCase {
+
+    private static String csv() {
+        StringBuilder sb = new StringBuilder("id,precio,pais,nota,mezcla\n");
+        for (int i = 0; i < 3000; i++) {
+            sb.append(i).append(',')
+              .append(i % 5 == 0 ? "" : (i * 0.25) + "").append(',')
+              .append(i % 3 == 0 ? "peru" : "chile").append(',')
+              .append("\"nota ").append(i).append(", \"\"única\"\"\"").append(',')
+              .append(i % 7 == 0 ? "007" : String.valueOf(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void sameCells(Sheet expected, Sheet sheet) {
+        assertEquals("filas", expected.getRowCount(), sheet.getRowCount());
+        assertEquals("columnas", expected.getColCount(), sheet.getColCount());
+        for (int r = 0; r < expected.getRowCount(); r++) {
+            for (int c = 0; c < expected.getColCount(); c++) {
+                assertEquals("celda " + r + "," + c, expected.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+            }
+        }
+    }
+
+    public void testWriteAndOpen() throws Exception {
+        Path source = Files.createTempFile("origen", ".csv");
+        Path file = Files.createTempFile("hoja", ".csvx");
+        try {
+            Files.write(source, csv().getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(source.toString());
+            CsvReader.writeCsv(sheet, file.toString());
+            assertTrue(CsvxFormat.isCsvx(file));
+
+            Sheet reopened = CsvReader.readCsv(file.toString());
+            sameCells(sheet, reopened);
+
+            // editar y guardar sobre el .csvx
+            reopened.setCell(10, 3, "cambiada");
+            reopened.addColumn();
+            reopened.setCell(1, 5, "nueva");
+            CsvReader.writeCsv(reopened, file.toString());
+            Sheet again = CsvReader.readCsv(file.toString());
+            sameCells(reopened, again);
+            assertEquals("cambiada", again.getCell(10, 3).getValue());
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testCsvStartingWithMagicIsCsv() throws Exception {
+        Path file = Files.createTempFile("csvx-id", ".csv");
+        try {
+            Files.write(file, "CSVX_id,nombre,otro,mas,columnas,largas\n1,uno,a,b,c,d\n".getBytes(StandardCharsets.UTF_8));
+            assertFalse(CsvxFormat.isCsvx(file));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals("CSVX_id", sheet.getCell(0, 0).getValue());
+            assertEquals("uno", sheet.getCell(1, 1).getValue());
+
+            // y al guardarlo sigue siendo texto
+            CsvReader.writeCsv(sheet, file.toString());
+            assertFalse(CsvxFormat.isCsvx(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testExportOption() throws Exception {
+        Path source = Files.createTempFile("exportar", ".csv");
+        Path file = source.resolveSibling(source.getFileName() + ".csvx");
+        try {
+            Files.write(source, csv().getBytes(StandardCharsets.UTF_8));
+            App.main(new String[]{source.toString(), "--export", file.toString()});
+            assertTrue(CsvxFormat.isCsvx(file));
+            sameCells(CsvReader.readCsv(source.toString()), CsvReader.readCsv(file.toString()));
+
+            // con --where solo las filas que cumplen
+            App.main(new String[]{source.toString(), "--where", "pais==peru", "--export=" + file});
+            assertEquals("encabezado y una de cada tres", 1 + 1000, CsvReader.readCsv(file.toString()).getRowCount());
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(file);
+        }
+    }
+}
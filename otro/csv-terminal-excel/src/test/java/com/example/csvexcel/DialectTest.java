@@ -0,0 +1,87 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas de la detección del formato: separador, comillas, codificación,
+ * BOM, salto de línea y encabezado a partir de una muestra del archivo.
+ */
+public class DialectTest extends TestCase {
+
+    private static Dialect sniff(String text) {
+        return Dialect.sniff(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testDelimiters() {
+        assertEquals("coma", ',', sniff("a,b,c\n1,2,3\n4,5,6\n").getDelimiter());
+        // la coma decimal no confunde al separador
+        assertEquals("punto y coma", ';', sniff("nombre;monto\nana;1,5\nluis;2,75\n").getDelimiter());
+        assertEquals("tabulador", '\t', sniff("a\tb\tc\n1\t2\t3\n4\t5\t6\n").getDelimiter());
+        assertEquals("barra", '|', sniff("a|b|c\n1|\"x, y\"|3\n4|5|6\n").getDelimiter());
+    }
+
+    public void testQuotedDelimiterIgnored() {
+        Dialect d = sniff("id;texto\n1;\"a,b,c,d\"\n2;\"e,f,g,h\"\n");
+        assertEquals(';', d.getDelimiter());
+        assertEquals('"', d.getQuote());
+    }
+
+    public void testLatin1() {
+        byte[] sample = "nombre,ciudad\nJosé,Bogotá\nMaría,Cusco\n".getBytes(StandardCharsets.ISO_8859_1);
+        Dialect d = Dialect.sniff(sample);
+        assertEquals("sin UTF-8 válido es Latin-1", StandardCharsets.ISO_8859_1, d.getCharset());
+        assertFalse(d.hasBom());
+        assertEquals(StandardCharsets.UTF_8, sniff("nombre,ciudad\nJosé,Bogotá\n").getCharset());
+    }
+
+    public void testBom() {
+        byte[] text = "id,nombre\n1,uno\n".getBytes(StandardCharsets.UTF_8);
+        byte[] sample = new byte[text.length + 3];
+        sample[0] = (byte) 0xEF;
+        sample[1] = (byte) 0xBB;
+        sample[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, sample, 3, text.length);
+        Dialect d = Dialect.sniff(sample);
+        assertTrue(d.hasBom());
+        assertEquals(3, d.bomLength());
+        assertEquals(StandardCharsets.UTF_8, d.getCharset());
+        assertEquals(',', d.getDelimiter());
+    }
+
+    public void testHeader() {
+        assertTrue("texto sobre números", sniff("id,monto\n1,10\n2,20\n").hasHeader());
+        assertFalse("todo números", sniff("1,10\n2,20\n3,30\n").hasHeader());
+    }
+
+    public void testLineEnd() {
+        assertEquals("\n", sniff("a,b\n1,2\n").getLineEnd());
+        assertEquals("\r\n", sniff("a,b\r\n1,2\r\n").getLineEnd());
+        // el salto dentro de comillas no cuenta
+        assertEquals("\r\n", sniff("\"a\nb\",c\r\n1,2\r\n").getLineEnd());
+        assertEquals("sin saltos", "\n", sniff("a,b").getLineEnd());
+        assertEquals("se mantiene con comillas en todo", "\r\n",
+                sniff("a,b\r\n").withQuoteAll(true).getLineEnd());
+    }
+
+    public void testReadLatin1Semicolon() throws Exception {
+        Path file = Files.createTempFile("dialecto", ".csv");
+        try {
+            Files.write(file, "nombre;ciudad\nJosé;\"Bogotá; centro\"\n".getBytes(StandardCharsets.ISO_8859_1));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals(2, sheet.getColCount());
+            assertEquals("José", sheet.getCell(1, 0).getValue());
+            assertEquals("Bogotá; centro", sheet.getCell(1, 1).getValue());
+
+            // al guardar se conserva el formato original
+            CsvReader.writeCsv(sheet, file.toString());
+            assertEquals("nombre;ciudad\nJosé;\"Bogotá; centro\"\n",
+                    new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas de la columna codificada: cada valor distinto se guarda una vez,
+ * al pasar el máximo de valores la columna sigue como texto y los filtros
+ * por código dejan las mismas filas que comparar el texto.
+ */
+public class DictColumnTest extends TestCase {
+
+    public void testValuesAndCodes() {
+        DictColumn column = new DictColumn();
+        String[] values = {"peru", "chile", "peru", "", "Perú", "chile", null};
+        for (int i = 0; i < values.length; i++) column.set(i, values[i]);
+        assertEquals("vacía, peru, chile y Perú", 4, column.distinct());
+        assertEquals("peru", column.get(0));
+        assertEquals("Perú", column.get(4));
+        assertEquals("", column.get(3));
+        assertEquals("", column.get(6));
+        assertNull("más allá del final", column.get(100));
+        assertEquals("mismo valor, mismo código", column.codes()[0], column.codes()[2]);
+        assertEquals("la vacía es el código 0", 0, column.codes()[3]);
+
+        boolean[] byCode = column.matches(Condition.parse(0, "==PERU"));
+        for (int i = 0; i < values.length; i++) {
+            String v = values[i] == null ? "" : values[i];
+            assertEquals("fila " + i, Condition.parse(0, "==PERU").test(v), byCode[column.codes()[i]]);
+        }
+    }
+
+    public void testTooManyValuesBecomesText() {
+        ColumnStore store = new ColumnStore();
+        store.add(0, new String[]{"a"});
+        store.replaceColumn(0, new DictColumn());
+        store.setCell(0, 0, "a");
+        for (int i = 1; i < DictColumn.MAX_VALUES; i++) store.add(i, new String[]{"v" + i});
+        assertTrue(store.column(0) instanceof DictColumn);
+
+        // un valor nuevo más pasa la columna a texto, con los mismos valores
+        store.add(DictColumn.MAX_VALUES, new String[]{"otro"});
+        store.add(DictColumn.MAX_VALUES + 1, new String[]{"y otro"});
+        assertTrue(store.column(0) instanceof TextColumn);
+        assertEquals("a", store.cell(0, 0));
+        assertEquals("v12345", store.cell(12345, 0));
+        assertEquals("y otro", store.cell(DictColumn.MAX_VALUES + 1, 0));
+    }
+
+    public void testCopyAndShared() {
+        ColumnStore store = new ColumnStore();
+        store.add(0, new String[]{"x"});
+        store.add(1, new String[]{"y"});
+        store.replaceColumn(0, new DictColumn());
+        store.setCell(0, 0, "x");
+        store.setCell(1, 0, "y");
+
+        // la columna duplicada comparte los códigos hasta que se escribe una
+        store.duplicateColumn(0);
+        store.setCell(1, 1, "z");
+        assertEquals("y", store.cell(1, 0));
+        assertEquals("z", store.cell(1, 1));
+
+        ColumnStore snapshot = store.snapshot();
+        store.setCell(0, 0, "cambiada");
+        assertEquals("x", snapshot.cell(0, 0));
+        assertEquals("cambiada", store.cell(0, 0));
+        assertTrue(store.column(0) instanceof DictColumn);
+    }
+
+    public void testLoadedColumnFilter() throws Exception {
+        Path file = Files.createTempFile("paises", ".csv");
+        try {
+            String[] countries = {"Peru", "peru", "PERÚ", "Chile", "", "Bolivia"};
+            StringBuilder sb = new StringBuilder("id,pais\n");
+            for (int i = 0; i < 3000; i++) sb.append(i).append(',').append(countries[i % countries.length]).append('\n');
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertTrue(sheet.storedColumn(1) instanceof DictColumn);
+
+            sheet.filterByColumn(1, "==peru");
+            assertEquals("Peru y peru", 1000, sheet.getRowCount());
+            sheet.clearFilter();
+            sheet.filterByColumn(1, "==");
+            assertEquals("vacías", 500, sheet.getRowCount());
+            sheet.clearFilter();
+
+            CsvReader.writeCsv(sheet, file.toString());
+            assertEquals(sb.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Pruebas del diario de cambios: se crea con el primer cambio, se vuelve a
+ * aplicar al abrir, descarta un final cortado o con el crc roto, se borra al
+ * guardar sin cambios pendientes y no pierde cambios si el programa muere
+ * entre guardar el CSV y compactar el diario.
+ */
+public class EditJournalTest extends TestCase {
+
+    private static final String CSV = "id,nombre\n1,uno\n2,dos\n3,tres\n";
+
+    private Path csvFile() throws IOException {
+        Path file = Files.createTempFile("diario", ".csv");
+        Files.write(file, CSV.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    public void testNoFileUntilFirstChange() throws Exception {
+        Path file = csvFile();
+        Path journalPath = EditJournal.pathFor(file);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            journal.flush();
+            assertFalse("solo mirar no crea el diario", Files.exists(journalPath));
+
+            sheet.setCell(1, 1, "cambio");
+            journal.close();
+            assertTrue("el primer cambio crea el diario", Files.exists(journalPath));
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testReplay() throws Exception {
+        Path file = csvFile();
+        Path journalPath = EditJournal.pathFor(file);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            sheet.setCell(2, 1, "editada");
+            sheet.addColumn();
+            sheet.setCell(3, 2, "nueva");
+            journal.close();
+
+            Sheet reopened = CsvReader.readCsv(file.toString());
+            EditJournal again = EditJournal.open(reopened, file);
+            assertEquals("cambios recuperados", 3, again.getReplayed());
+            assertEquals("celda editada", "editada", reopened.getCell(2, 1).getValue());
+            assertEquals("columna nueva", 3, reopened.getColCount());
+            assertEquals("celda en la columna nueva", "nueva", reopened.getCell(3, 2).getValue());
+            again.close();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testTruncatedAndCorruptTail() throws Exception {
+        Path file = csvFile();
+        Path journalPath = EditJournal.pathFor(file);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            sheet.setCell(1, 1, "a");
+            journal.flush();
+            long afterFirst = Files.size(journalPath);
+            sheet.setCell(2, 1, "b");
+            journal.close();
+            byte[] full = Files.readAllBytes(journalPath);
+
+            // el proceso murió a mitad del segundo registro: se aplica solo el primero
+            for (long cut = afterFirst; cut < full.length; cut++) {
+                Files.write(journalPath, Arrays.copyOf(full, (int) cut));
+                Sheet reopened = CsvReader.readCsv(file.toString());
+                EditJournal again = EditJournal.open(reopened, file);
+                assertEquals("cortado en " + cut, 1, again.getReplayed());
+                assertEquals("cortado en " + cut, "a", reopened.getCell(1, 1).getValue());
+                assertEquals("cortado en " + cut, "dos", reopened.getCell(2, 1).getValue());
+                again.close();
+                assertEquals("se descarta el registro cortado", afterFirst, Files.size(journalPath));
+            }
+
+            // un byte cambiado en el segundo registro rompe su crc
+            byte[] corrupt = full.clone();
+            corrupt[full.length - 6] ^= 0x20;
+            Files.write(journalPath, corrupt);
+            Sheet reopened = CsvReader.readCsv(file.toString());
+            EditJournal again = EditJournal.open(reopened, file);
+            assertEquals("crc roto", 1, again.getReplayed());
+            assertEquals("crc roto", "dos", reopened.getCell(2, 1).getValue());
+            again.close();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testCannotCreateContinuesWithout() throws Exception {
+        Path file = csvFile();
+        // un directorio en el lugar del diario impide crearlo
+        Path journalPath = EditJournal.pathFor(file);
+        Files.createDirectory(journalPath);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            sheet.setCell(1, 1, "x");
+            try {
+                journal.flush();
+                fail("debería avisar que no se pudo crear");
+            } catch (IOException e) {
+                // esperado
+            }
+            // se sigue editando sin diario y sin más errores
+            sheet.setCell(2, 1, "y");
+            journal.flush();
+            assertEquals("sin anotaciones pendientes", 0, journal.size());
+            assertEquals("la edición sigue en la hoja", "y", sheet.getCell(2, 1).getValue());
+            journal.close();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSaveRemovesEmptyJournal() throws Exception {
+        Path file = csvFile();
+        Path journalPath = EditJournal.pathFor(file);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            sheet.setCell(1, 1, "guardada");
+            journal.flush();
+            assertTrue(Files.exists(journalPath));
+
+            CsvReader.writeCsv(sheet, file.toString());
+            assertFalse("sin cambios pendientes no queda diario", Files.exists(journalPath));
+
+            // el siguiente cambio lo vuelve a crear, con el CSV nuevo como base
+            sheet.setCell(2, 1, "después");
+            journal.close();
+            Sheet reopened = CsvReader.readCsv(file.toString());
+            EditJournal again = EditJournal.open(reopened, file);
+            assertEquals(1, again.getReplayed());
+            assertEquals("guardada", reopened.getCell(1, 1).getValue());
+            assertEquals("después", reopened.getCell(2, 1).getValue());
+            again.close();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testEditsDuringBackgroundSaveStay() throws Exception {
+        Path file = csvFile();
+        Path journalPath = EditJournal.pathFor(file);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            sheet.setCell(1, 1, "antes");
+            journal.flush();
+
+            // se edita mientras se guarda: ese cambio queda en el diario
+            Sheet snapshot = sheet.snapshot();
+            sheet.clearChanges();
+            sheet.setCell(3, 1, "durante");
+            RowIndex written = CsvSaver.write(snapshot, file, null);
+            sheet.markSaved(written);
+            journal.close();
+
+            Sheet reopened = CsvReader.readCsv(file.toString());
+            EditJournal again = EditJournal.open(reopened, file);
+            assertEquals("solo el cambio posterior", 1, again.getReplayed());
+            assertEquals("antes", reopened.getCell(1, 1).getValue());
+            assertEquals("durante", reopened.getCell(3, 1).getValue());
+            again.close();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testCrashBeforeCompaction() throws Exception {
+        Path file = csvFile();
+        Path journalPath = EditJournal.pathFor(file);
+        try {
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            EditJournal journal = EditJournal.open(sheet, file);
+            sheet.setCell(1, 1, "guardada");
+            journal.flush();
+
+            Sheet snapshot = sheet.snapshot();
+            sheet.clearChanges();
+            sheet.setCell(2, 1, "sin guardar");
+            sheet.addColumn();
+            // el CSV se reemplaza pero el programa muere antes de markSaved
+            CsvSaver.write(snapshot, file, null);
+            journal.close();
+
+            for (int k = 0; k < 2; k++) {
+                Sheet reopened = CsvReader.readCsv(file.toString());
+                assertEquals("guardada", reopened.getCell(1, 1).getValue());
+                EditJournal again = EditJournal.open(reopened, file);
+                assertEquals("intento " + k, 2, again.getReplayed());
+                assertEquals("sin guardar", reopened.getCell(2, 1).getValue());
+                assertEquals(3, reopened.getColCount());
+                assertFalse("no se aparta el diario", Files.exists(journalPath.resolveSibling(journalPath.getFileName() + ".old")));
+                again.close();
+            }
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(file);
+        }
+    }
+}
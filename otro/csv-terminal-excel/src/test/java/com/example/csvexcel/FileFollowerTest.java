@@ -0,0 +1,98 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pruebas de --follow: la carga se detiene en el último registro completo
+ * y poll() agrega lo que se escribe después, sin perder ni partir filas.
+ */
+public class FileFollowerTest extends TestCase {
+
+    private static void append(Path file, String text) throws Exception {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static String row(Sheet sheet, int r) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < sheet.getColCount(); c++) {
+            if (c > 0) sb.append('|');
+            sb.append(sheet.getCell(r, c).getValue());
+        }
+        return sb.toString();
+    }
+
+    public void testHalfWrittenRecordWaits() throws Exception {
+        Path file = Files.createTempFile("seguir", ".csv");
+        try {
+            Files.write(file, "id,nombre\n1,uno\n2,do".getBytes(StandardCharsets.UTF_8));
+            FileFollower follower = FileFollower.open(file, null);
+            Sheet sheet = follower.getSheet();
+            assertEquals("el registro a medias no se carga", 2, sheet.getRowCount());
+            assertEquals(0, follower.poll());
+
+            append(file, "s\n3,tres\n");
+            assertEquals(2, follower.poll());
+            assertEquals(4, sheet.getRowCount());
+            assertEquals("2|dos", row(sheet, 2));
+            assertEquals("3|tres", row(sheet, 3));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testQuotedNewlineAndCrlf() throws Exception {
+        Path file = Files.createTempFile("seguir", ".csv");
+        try {
+            Files.write(file, "id,nota\r\n1,\"a\r\nb\"\r".getBytes(StandardCharsets.UTF_8));
+            FileFollower follower = FileFollower.open(file, null);
+            Sheet sheet = follower.getSheet();
+            assertEquals(2, sheet.getRowCount());
+            assertEquals("a\r\nb", sheet.getCell(1, 1).getValue());
+
+            // el \n que completa el \r no es una fila vacía
+            append(file, "\n2,\"c\n");
+            assertEquals(0, follower.poll());
+            append(file, "d\"\r\n");
+            assertEquals(1, follower.poll());
+            assertEquals(3, sheet.getRowCount());
+            assertEquals("2|c\nd", row(sheet, 2));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testFiltersAndTruncation() throws Exception {
+        Path file = Files.createTempFile("seguir", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder("id,pais\n");
+            for (int i = 0; i < 1000; i++) sb.append(i).append(i % 2 == 0 ? ",peru\n" : ",chile\n");
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            FileFollower follower = FileFollower.open(file, null);
+            Sheet sheet = follower.getSheet();
+            assertEquals(1001, sheet.getRowCount());
+            assertEquals(ColumnType.INTEGER, sheet.getColumnType(0));
+
+            // con un filtro activo solo se ven las nuevas que cumplen
+            sheet.filterByColumn(1, "==peru");
+            append(file, "1000,peru\n1001,chile\n1002,peru,extra\n");
+            assertEquals(3, follower.poll());
+            assertEquals(502, sheet.getRowCount());
+            assertEquals("1002|peru|extra", row(sheet, 501));
+
+            // si el archivo se achica se sigue desde su nuevo final
+            Files.write(file, "id,pais\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(0, follower.poll());
+            append(file, "7,bolivia\n");
+            sheet.clearFilter();
+            assertEquals(1, follower.poll());
+            assertEquals("7|bolivia|", row(sheet, sheet.getRowCount() - 1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
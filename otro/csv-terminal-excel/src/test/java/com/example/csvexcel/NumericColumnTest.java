@@ -0,0 +1,113 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas de la columna numérica: cada celda se lee con el mismo texto con
+ * que se escribió, sea un número común, "4.0", "007", un texto o vacía.
+ */
+public class NumericColumnTest extends TestCase {
+
+    private static final String[] VALUES = {"42", "-7", "0", "-0", "3.5", "4.0", "-0.0", "007", "1.50", "1e3",
+            "0.1", "123456789012345678", "999999999999999", "1000000000000000", "abc", "NaN", " 5", "5."};
+
+    public void testSameTextBack() {
+        NumericColumn column = new NumericColumn();
+        for (int i = 0; i < VALUES.length; i++) column.set(i * 3, VALUES[i]);
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals("fila " + i * 3, VALUES[i], column.get(i * 3));
+            assertNull("sin escribir", column.get(i * 3 + 1));
+        }
+        assertNull("más allá del final", column.get(10_000));
+
+        // los valores parseados: NaN si no es un número
+        assertEquals(42.0, column.values()[0], 0);
+        assertEquals(4.0, column.values()[15], 0);
+        assertEquals(7.0, column.values()[21], 0);
+        assertTrue("texto", Double.isNaN(column.values()[14 * 3]));
+    }
+
+    public void testOverwriteAndClear() {
+        NumericColumn column = new NumericColumn();
+        column.set(0, "007");
+        column.set(0, "7");
+        assertEquals("ya no es el texto de antes", "7", column.get(0));
+        column.set(1, "4.0");
+        column.set(1, "4");
+        assertEquals("4", column.get(1));
+        column.set(2, "texto");
+        column.set(2, "");
+        assertNull("vacía", column.get(2));
+        assertTrue(Double.isNaN(column.values()[2]));
+        column.set(1, null);
+        assertNull(column.get(1));
+    }
+
+    public void testCopyIsIndependent() {
+        NumericColumn column = new NumericColumn();
+        column.set(0, "1");
+        column.set(1, "2.0");
+        column.set(2, "003");
+        Column copy = column.copy();
+        column.set(0, "9");
+        column.set(1, "x");
+        column.set(2, "");
+        assertEquals("1", copy.get(0));
+        assertEquals("2.0", copy.get(1));
+        assertEquals("003", copy.get(2));
+    }
+
+    public void testNonAsciiDigitsAreText() throws Exception {
+        assertFalse(Expression.isPlainNumber("٣٤"));
+        assertFalse(Expression.isPlainNumber("1.٥"));
+        NumericColumn column = new NumericColumn();
+        column.set(0, "٣٤");
+        assertEquals("٣٤", column.get(0));
+        assertTrue(Double.isNaN(column.values()[0]));
+
+        // pasa por la conversión de columnas que se hace al cargar
+        Path file = Files.createTempFile("digitos", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder("id,monto\n");
+            for (int i = 0; i < Sheet.SETTLE_ROWS + 5000; i++) {
+                sb.append(i).append(',').append(i == 70_000 ? "٣٤" : String.valueOf(i % 50)).append('\n');
+            }
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals("٣٤", sheet.getCell(70_001, 1).getValue());
+            assertEquals(ColumnType.TEXT, sheet.getColumnType(1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testLoadedColumnRoundTrip() throws Exception {
+        Path file = Files.createTempFile("numeros", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder("id,monto\n");
+            for (int i = 0; i < 2000; i++) sb.append(i).append(',').append(VALUES[i % 14]).append('\n');
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertTrue(sheet.storedColumn(0) instanceof NumericColumn);
+
+            // al guardar sale igual que el archivo
+            CsvReader.writeCsv(sheet, file.toString());
+            assertEquals(sb.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+            // cumplen "42", "1e3" y los tres de 15 o más cifras
+            int expected = 0;
+            for (int i = 0; i < 2000; i++) {
+                int k = i % 14;
+                if (k == 0 || k == 9 || k >= 11) expected++;
+            }
+            sheet.filterByColumn(1, ">=42");
+            assertEquals(expected, sheet.getRowCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
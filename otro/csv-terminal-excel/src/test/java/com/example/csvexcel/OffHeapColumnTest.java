@@ -0,0 +1,92 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas de la columna fuera del heap: celdas reescritas, vacías y más
+ * grandes que un bloque, copia, filtros sobre los bytes y una carga grande
+ * que escribe el texto fuera del heap mientras lee.
+ */
+public class OffHeapColumnTest extends TestCase {
+
+    public void testSetGetAndCopy() {
+        OffHeapColumn column = new OffHeapColumn();
+        int n = 200_000;
+        // varias pasadas: lo reescrito se compacta
+        for (int pass = 0; pass < 4; pass++) {
+            for (int i = 0; i < n; i++) column.set(i, "válor-" + pass + "-" + i);
+        }
+        String big = "z".repeat(OffHeapColumn.CHUNK_BYTES + 10);
+        column.set(5, big);
+        column.set(6, "");
+        column.set(7, null);
+        Column copy = column.copy();
+        for (int i = 0; i < n; i++) {
+            String expected = i == 5 ? big : i == 6 || i == 7 ? null : "válor-3-" + i;
+            assertEquals("fila " + i, expected, column.get(i));
+            assertEquals("copia fila " + i, expected, copy.get(i));
+        }
+        assertNull("más allá del final", column.get(n * 10));
+
+        // la copia no cambia con la original
+        column.set(8, "otro");
+        assertEquals("válor-3-8", copy.get(8));
+    }
+
+    public void testConditionOnBytes() {
+        OffHeapColumn column = new OffHeapColumn();
+        column.set(0, "abc");
+        column.set(1, "12.5");
+        column.set(2, "ñandú");
+        assertEquals(1, column.test(0, Condition.parse(0, "==ABC")));
+        assertEquals(0, column.test(0, Condition.parse(0, "!=abc")));
+        assertEquals(1, column.test(1, Condition.parse(0, ">12")));
+        assertEquals("vacía: se decide con el texto", -1, column.test(3, Condition.parse(0, "==abc")));
+        assertEquals("no ASCII: se decide con el texto", -1, column.test(2, Condition.parse(0, "==ÑANDÚ")));
+    }
+
+    public void testLargeLoadWritesOffHeap() throws Exception {
+        Path file = Files.createTempFile("grande", ".csv");
+        int rows = Sheet.OFF_HEAP_ROWS + 50_000;
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("id,texto,pais,monto\n");
+                for (int i = 0; i < rows; i++) {
+                    // después de las primeras filas 'pais' tiene demasiados
+                    // valores distintos y 'monto' deja de ser numérica
+                    String pais = i < 100_000 ? (i % 3 == 0 ? "peru" : "chile") : "p" + i;
+                    String monto = i == rows - 10 ? "n/a" : String.valueOf(i % 1000);
+                    out.write(i + ",\"texto " + i + ", único\"," + pais + "," + monto + "\n");
+                }
+            }
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals(rows + 1, sheet.getRowCount());
+            assertTrue("texto fuera del heap", sheet.storedColumn(1) instanceof OffHeapColumn);
+            assertEquals(ColumnType.INTEGER, sheet.getColumnType(0));
+            assertEquals(ColumnType.TEXT, sheet.getColumnType(2));
+            assertEquals(ColumnType.TEXT, sheet.getColumnType(3));
+
+            // las celdas quedan igual que en el archivo
+            Sheet lazy = CsvReader.openLazy(file.toString(), null);
+            for (int r = 0; r < sheet.getRowCount(); r += 997) {
+                for (int c = 0; c < 4; c++) {
+                    assertEquals("celda " + r + "," + c, lazy.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+                }
+            }
+            int last = rows - 9; // fila de "n/a" (más el encabezado)
+            assertEquals("n/a", sheet.getCell(last, 3).getValue());
+            assertEquals("p" + (rows - 10), sheet.getCell(last, 2).getValue());
+
+            sheet.filterByColumn(1, "==texto 12345, único");
+            assertEquals(1, sheet.getRowCount());
+            assertEquals("12345", sheet.getCell(0, 0).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas del parser paralelo con bloques pequeños, para que los límites
+ * caigan dentro de campos entre comillas y saltos de línea embebidos.
+ */
+public class ParallelCsvParserTest extends TestCase {
+
+    private static final String CSV =
+            "id,nombre,nota\n"
+          + "1,\"Doe, John\",\"dice \"\"hola\"\"\"\n"
+          + "2,\"linea uno\nlinea dos\nlinea tres\",x\n"
+          + "3,\"\"\"\n,\"\"\",y\r\n"
+          + "4,simple,\n"
+          + "5,\"ñandú\",\"fin\"";
+
+    private static final String[][] EXPECTED = {
+            {"id", "nombre", "nota"},
+            {"1", "Doe, John", "dice \"hola\""},
+            {"2", "linea uno\nlinea dos\nlinea tres", "x"},
+            {"3", "\"\n,\"", "y"},
+            {"4", "simple", ""},
+            {"5", "ñandú", "fin"},
+    };
+
+    public void testQuotesAndNewlinesAcrossChunks() throws Exception {
+        Path file = Files.createTempFile("parallel", ".csv");
+        try {
+            Files.write(file, CSV.getBytes(StandardCharsets.UTF_8));
+            // todos los tamaños de bloque pequeños, para cortar en cada posición posible
+            for (int chunk = 1; chunk <= 40; chunk++) {
+                Sheet sheet = ParallelCsvParser.parse(file, chunk, null);
+                assertEquals("bloque " + chunk, EXPECTED.length, sheet.getRowCount());
+                for (int r = 0; r < EXPECTED.length; r++) {
+                    for (int c = 0; c < EXPECTED[r].length; c++) {
+                        assertEquals("bloque " + chunk + " celda " + r + "," + c,
+                                EXPECTED[r][c], sheet.getCell(r, c).getValue());
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSameResultAsOpenCsv() throws Exception {
+        Path file = Files.createTempFile("parallel", ".csv");
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                sb.append(i).append(",\"texto ").append(i).append("\n\"\"cita\"\"\",")
+                  .append(i * 2).append('\n');
+            }
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            Sheet expected = CsvReader.readCsv(file.toString());
+            Sheet actual = ParallelCsvParser.parse(file, 4096, null);
+            assertEquals(expected.getRowCount(), actual.getRowCount());
+            assertEquals(expected.getColCount(), actual.getColCount());
+            for (int r = 0; r < expected.getRowCount(); r++) {
+                for (int c = 0; c < expected.getColCount(); c++) {
+                    assertEquals(expected.getCell(r, c).getValue(), actual.getCell(r, c).getValue());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
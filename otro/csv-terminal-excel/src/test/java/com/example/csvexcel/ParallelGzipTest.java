@@ -0,0 +1,106 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pruebas del gzip por bloques: lo que se escribe se lee igual (con este
+ * programa y con GZIPInputStream), también con varios miembros y sin datos.
+ */
+public class ParallelGzipTest extends TestCase {
+
+    private static byte[] gunzip(byte[] data) throws Exception {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] readAll(Path file) throws Exception {
+        try (InputStream in = ParallelGzip.open(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    public void testRoundTripSeveralMembers() throws Exception {
+        Path file = Files.createTempFile("bloques", ".gz");
+        try {
+            // más de tres bloques, el último incompleto
+            byte[] data = new byte[3 * ParallelGzip.BLOCK_SIZE + 12345];
+            for (int i = 0; i < data.length; i++) data[i] = (byte) ((i * 31) ^ (i >> 9));
+            try (OutputStream out = new ParallelGzip.Output(Files.newOutputStream(file))) {
+                out.write(data, 0, 1000);
+                out.write(data, 1000, data.length - 1000);
+            }
+            byte[] written = Files.readAllBytes(file);
+            assertTrue(ParallelGzip.isGzip(file));
+            assertEquals("subcampo CX", 'C', written[12]);
+            assertEquals("subcampo CX", 'X', written[13]);
+            assertTrue("en paralelo", Arrays.equals(data, readAll(file)));
+            assertTrue("con GZIPInputStream", Arrays.equals(data, gunzip(written)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testEmptyIsValidGzip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ParallelGzip.Output(bytes).close();
+        assertTrue("tiene un miembro", bytes.size() > 0);
+        assertEquals(0, gunzip(bytes.toByteArray()).length);
+
+        Path file = Files.createTempFile("vacio", ".csv.gz");
+        try {
+            // una hoja sin filas se guarda como un gzip vacío válido
+            CsvReader.writeCsv(new Sheet(), file.toString());
+            assertTrue(ParallelGzip.isGzip(file));
+            assertEquals(0, readAll(file).length);
+            assertEquals(0, CsvReader.readCsv(file.toString()).getRowCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSaveAndReadCsvGz() throws Exception {
+        Path source = Files.createTempFile("origen", ".csv");
+        Path file = Files.createTempFile("hoja", ".csv.gz");
+        try {
+            StringBuilder sb = new StringBuilder("id,nombre\n");
+            for (int i = 0; i < 100_000; i++) sb.append(i).append(",\"nombre, ").append(i).append("\"\n");
+            Files.write(source, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(source.toString());
+            CsvReader.writeCsv(sheet, file.toString());
+
+            assertEquals(sb.toString(), new String(gunzip(Files.readAllBytes(file)), StandardCharsets.UTF_8));
+            Sheet reread = CsvReader.readCsv(file.toString());
+            assertEquals(sheet.getRowCount(), reread.getRowCount());
+            assertEquals("nombre, 99999", reread.getCell(100_000, 1).getValue());
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testGzipFromOtherTool() throws Exception {
+        Path file = Files.createTempFile("otro", ".csv.gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                out.write("a,b\n1,2\n3,4\n".getBytes(StandardCharsets.UTF_8));
+            }
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals(3, sheet.getRowCount());
+            assertEquals("4", sheet.getCell(2, 1).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
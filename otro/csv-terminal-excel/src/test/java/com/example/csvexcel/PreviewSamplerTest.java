@@ -0,0 +1,163 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pruebas de la vista previa: las primeras filas en orden, la muestra
+ * repartida por el archivo y el comienzo de registro que se busca después
+ * de saltar a un byte cualquiera, aunque caiga dentro de un campo entre
+ * comillas con un salto de línea.
+ */
+public class PreviewSamplerTest extends TestCase {
+
+    // Cada registro tiene un salto de línea entre comillas; lo que sigue al
+    // salto no tiene la misma cantidad de campos que el encabezado
+    private static String[] record(int i) {
+        return new String[] {String.valueOf(i), "nota " + i + "\nsigue " + i, String.valueOf(i % 10)};
+    }
+
+    private static String line(int i) {
+        String[] r = record(i);
+        return r[0] + ",\"" + r[1] + "\"," + r[2] + "\n";
+    }
+
+    // Escribe 'rows' registros y devuelve dónde empieza cada uno
+    private static List<Long> write(Path file, int rows) throws Exception {
+        List<Long> starts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder("id,nota,valor\n");
+        for (int i = 0; i < rows; i++) {
+            starts.add((long) sb.length());
+            sb.append(line(i));
+        }
+        starts.add((long) sb.length());
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return starts;
+    }
+
+    private static String[] row(Sheet sheet, int r) {
+        String[] values = new String[sheet.getColCount()];
+        for (int c = 0; c < values.length; c++) values[c] = sheet.getCell(r, c).getValue();
+        return values;
+    }
+
+    private static void assertRecord(String message, int i, String[] row) {
+        assertEquals(message, String.join("|", record(i)), String.join("|", row));
+    }
+
+    public void testSmallFileReadWhole() throws Exception {
+        Path file = Files.createTempFile("previa", ".csv");
+        try {
+            write(file, 100);
+            PreviewSampler preview = PreviewSampler.open(file, null);
+            Sheet sheet = preview.getSheet();
+            assertEquals("encabezado y todas las filas", 101, sheet.getRowCount());
+            for (int i = 0; i < 100; i++) assertRecord("fila " + i, i, row(sheet, i + 1));
+            assertTrue(preview.getMessage(), preview.getMessage().contains("archivo completo (101 filas)"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testHeadAndSample() throws Exception {
+        Path file = Files.createTempFile("previa", ".csv");
+        try {
+            int rows = 30_000;
+            write(file, rows);
+            PreviewSampler preview = PreviewSampler.open(file, null);
+            Sheet sheet = preview.getSheet();
+            int head = PreviewSampler.HEAD_ROWS;
+            assertTrue("hay muestra", sheet.getRowCount() > head);
+            assertTrue("no lee el archivo entero", sheet.getRowCount() <= head + PreviewSampler.SAMPLE_ROWS);
+            assertEquals("encabezado", "id|nota|valor", String.join("|", row(sheet, 0)));
+            for (int i = 0; i < head - 1; i++) assertRecord("primeras filas en orden", i, row(sheet, i + 1));
+
+            // cada fila de la muestra es un registro entero, en orden y sin repetir
+            int previous = head - 2;
+            for (int r = head; r < sheet.getRowCount(); r++) {
+                String[] values = row(sheet, r);
+                int id = Integer.parseInt(values[0]);
+                assertTrue("en orden: " + id + " después de " + previous, id > previous);
+                assertTrue("dentro del archivo", id < rows);
+                assertRecord("fila de la muestra " + r, id, values);
+                previous = id;
+            }
+            assertTrue(preview.getMessage(), preview.getMessage().startsWith("MUESTRA: " + head + " primeras filas"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSeekInsideQuotedNewline() throws Exception {
+        Path file = Files.createTempFile("previa", ".csv");
+        try {
+            List<Long> starts = write(file, 20);
+            CsvByteParser parser = new CsvByteParser(Dialect.sniff(file));
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                // cualquier byte del registro 5 (también dentro de las comillas,
+                // antes y después del salto) lleva al comienzo del registro 6
+                for (long offset = starts.get(5); offset < starts.get(6); offset++) {
+                    Map<Long, String[]> sample = new TreeMap<>();
+                    PreviewSampler.sampleAt(ch, offset, size, 3, parser, null, ByteBuffer.allocate(64), sample);
+                    assertEquals("un registro desde " + offset, 1, sample.size());
+                    assertEquals("comienzo desde " + offset, starts.get(6), sample.keySet().iterator().next());
+                    assertRecord("registro desde " + offset, 6, sample.values().iterator().next());
+                }
+
+                // el último registro no tiene otro después con el que confirmarlo
+                Map<Long, String[]> sample = new TreeMap<>();
+                PreviewSampler.sampleAt(ch, starts.get(18) + 3, size, 3, parser, null, ByteBuffer.allocate(64), sample);
+                assertEquals("comienzo del último", starts.get(19), sample.keySet().iterator().next());
+                assertRecord("último registro", 19, sample.get(starts.get(19)));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSelectedColumns() throws Exception {
+        Path file = Files.createTempFile("previa", ".csv");
+        try {
+            write(file, 30_000);
+            Sheet sheet = PreviewSampler.open(file, new int[] {0, 2}).getSheet();
+            assertEquals("solo dos columnas", 2, sheet.getColCount());
+            for (int r = 1; r < sheet.getRowCount(); r++) {
+                int id = Integer.parseInt(sheet.getCell(r, 0).getValue());
+                assertEquals("valor de " + id, String.valueOf(id % 10), sheet.getCell(r, 1).getValue());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testGzipHeadOnly() throws Exception {
+        Path file = Files.createTempFile("previa", ".csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("id,nota,valor\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 5000; i++) out.write(line(i).getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            PreviewSampler preview = PreviewSampler.open(file, null);
+            Sheet sheet = preview.getSheet();
+            assertEquals("solo las primeras filas", PreviewSampler.HEAD_ROWS, sheet.getRowCount());
+            assertRecord("última leída", PreviewSampler.HEAD_ROWS - 2, row(sheet, PreviewSampler.HEAD_ROWS - 1));
+            assertEquals("MUESTRA: " + PreviewSampler.HEAD_ROWS + " primeras filas (--preview, no se puede guardar)",
+                    preview.getMessage());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Pruebas de varios archivos en una hoja: las columnas se unen por nombre
+ * (o por posición si un archivo no tiene encabezado), las filas quedan en
+ * el orden de los archivos y se puede filtrar por archivo de origen.
+ */
+public class ReadManyTest extends TestCase {
+
+    private Path dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("varios");
+        write("data-1.csv", "id,nombre,monto\n1,ana,10\n2,luis,20\n");
+        // otro orden, una columna nueva y otra que falta
+        write("data-2.csv", "monto,id,pais\n30,3,peru\n40,4,chile\n");
+        // sin encabezado: se une por posición
+        write("data-3.csv", "5,6,7\n8,9,10\n");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) Files.delete(f);
+        }
+        Files.delete(dir);
+    }
+
+    private void write(String name, String text) throws Exception {
+        Files.write(dir.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String row(Sheet sheet, int r) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < sheet.getColCount(); c++) {
+            if (c > 0) sb.append('|');
+            sb.append(sheet.getCell(r, c).getValue());
+        }
+        return sb.toString();
+    }
+
+    private Sheet readAll() throws Exception {
+        return CsvReader.readMany(List.of(dir.resolve("data-*.csv").toString()), null);
+    }
+
+    public void testSchemaUnion() throws Exception {
+        assertFalse("el tercero no tiene encabezado", Dialect.sniff(dir.resolve("data-3.csv")).hasHeader());
+        Sheet sheet = readAll();
+        assertEquals("encabezado y seis filas", 7, sheet.getRowCount());
+        assertEquals("id|nombre|monto|pais", row(sheet, 0));
+        assertEquals("1|ana|10|", row(sheet, 1));
+        assertEquals("3||30|peru", row(sheet, 3));
+        assertEquals("4||40|chile", row(sheet, 4));
+        assertEquals("5|6|7|", row(sheet, 5));
+        assertEquals("8|9|10|", row(sheet, 6));
+        assertEquals("data-2.csv", sheet.getSourceFile(3));
+        assertEquals("data-3.csv", sheet.getSourceFile(6));
+        // tipos inferidos sobre la hoja unida
+        assertEquals(ColumnType.INTEGER, sheet.getColumnType(0));
+        assertEquals(ColumnType.TEXT, sheet.getColumnType(1));
+    }
+
+    public void testFirstFileWithoutHeader() throws Exception {
+        Files.delete(dir.resolve("data-1.csv"));
+        Files.move(dir.resolve("data-3.csv"), dir.resolve("data-0.csv"));
+        Sheet sheet = readAll();
+        // el encabezado es el del único archivo que lo tiene
+        assertEquals("monto|id|pais", row(sheet, 0));
+        assertEquals("5|6|7", row(sheet, 1));
+        assertEquals("30|3|peru", row(sheet, 3));
+        assertEquals(5, sheet.getRowCount());
+    }
+
+    public void testRepeatedName() throws Exception {
+        write("data-4.csv", "id,id\n11,12\n");
+        Sheet sheet = readAll();
+        assertEquals("id|nombre|monto|pais|id", row(sheet, 0));
+        assertEquals("11||||12", row(sheet, sheet.getRowCount() - 1));
+    }
+
+    public void testFilterBySource() throws Exception {
+        Sheet sheet = readAll();
+        assertTrue(sheet.filterBySource("==data-2.csv"));
+        assertEquals(2, sheet.getRowCount());
+        assertEquals("3||30|peru", row(sheet, 0));
+
+        // se combina con un filtro por columna
+        sheet.clearFilter();
+        assertTrue(sheet.filterBySource("!=data-2.csv"));
+        assertEquals("cuatro filas y el encabezado", 5, sheet.getRowCount());
+        sheet.filterByColumn(0, ">4");
+        assertEquals(2, sheet.getRowCount());
+        assertEquals("data-3.csv", sheet.getSourceFile(0));
+
+        // una condición inválida no cambia nada
+        sheet.clearFilter();
+        assertFalse(sheet.filterBySource("data-2.csv"));
+        assertFalse(sheet.isFiltered());
+        assertEquals(7, sheet.getRowCount());
+    }
+}
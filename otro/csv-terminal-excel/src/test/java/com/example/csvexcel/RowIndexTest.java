@@ -0,0 +1,137 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+/**
+ * Pruebas del índice de filas guardado junto al CSV: se vuelve a abrir con
+ * los mismos offsets y se descarta (y se vuelve a armar) si el CSV cambió o
+ * si el índice está dañado.
+ */
+public class RowIndexTest extends TestCase {
+
+    private static String csv() {
+        StringBuilder sb = new StringBuilder("id,nombre,nota\n");
+        for (int i = 0; i < 5000; i++) sb.append(i).append(",n").append(i).append(",\"a\nb, ").append(i).append("\"\n");
+        return sb.toString();
+    }
+
+    private static RowIndex build(Path file) throws Exception {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return RowIndex.build(ch, Dialect.sniff(file), null);
+        }
+    }
+
+    // Cambia un int del encabezado del índice (filas en 32, columnas en 36)
+    private static void patchInt(Path idx, int pos, int value) throws Exception {
+        try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, value), pos);
+        }
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        Path file = Files.createTempFile("indice", ".csv");
+        Path idx = RowIndex.sidecarPath(file);
+        try {
+            Files.write(file, csv().getBytes(StandardCharsets.UTF_8));
+            RowIndex index = build(file);
+            assertEquals(5001, index.getRowCount());
+            assertEquals(3, index.getColCount());
+            index.save(file);
+
+            RowIndex loaded = RowIndex.load(file);
+            assertNotNull(loaded);
+            assertEquals(index.getRowCount(), loaded.getRowCount());
+            assertEquals(index.getColCount(), loaded.getColCount());
+            for (int r = 0; r <= index.getRowCount(); r++) assertEquals("fila " + r, index.offset(r), loaded.offset(r));
+            assertEquals(Files.size(file), loaded.offset(loaded.getRowCount()));
+            assertTrue(CsvReader.hasValidIndex(file.toString()));
+
+            // con el índice guardado se lee igual que el archivo
+            Sheet lazy = CsvReader.openLazy(file.toString(), null);
+            assertEquals("a\nb, 4321", lazy.getCell(4322, 2).getValue());
+        } finally {
+            Files.deleteIfExists(idx);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testStaleIndex() throws Exception {
+        Path file = Files.createTempFile("indice", ".csv");
+        Path idx = RowIndex.sidecarPath(file);
+        try {
+            Files.write(file, csv().getBytes(StandardCharsets.UTF_8));
+            FileTime time = Files.getLastModifiedTime(file);
+            build(file).save(file);
+
+            // mismo tamaño y fecha, otro encabezado
+            byte[] other = csv().replace("id,nombre", "ID,nombre").getBytes(StandardCharsets.UTF_8);
+            Files.write(file, other);
+            Files.setLastModifiedTime(file, time);
+            assertNull("otro encabezado", RowIndex.load(file));
+
+            // más filas
+            Files.write(file, (csv() + "9999,x,y\n").getBytes(StandardCharsets.UTF_8));
+            assertNull("otro tamaño", RowIndex.load(file));
+            assertFalse(CsvReader.hasValidIndex(file.toString()));
+
+            // openLazy lo vuelve a armar
+            Sheet lazy = CsvReader.openLazy(file.toString(), null);
+            assertEquals(5002, lazy.getRowCount());
+            assertEquals("9999", lazy.getCell(5001, 0).getValue());
+            assertNotNull(RowIndex.load(file));
+        } finally {
+            Files.deleteIfExists(idx);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testCorruptIndex() throws Exception {
+        Path file = Files.createTempFile("indice", ".csv");
+        Path idx = RowIndex.sidecarPath(file);
+        try {
+            Files.write(file, csv().getBytes(StandardCharsets.UTF_8));
+            build(file).save(file);
+            byte[] good = Files.readAllBytes(idx);
+
+            patchInt(idx, 32, -1);
+            assertFalse("filas negativas", CsvReader.hasValidIndex(file.toString()));
+            Files.write(idx, good);
+            patchInt(idx, 36, -5);
+            assertFalse("columnas negativas", CsvReader.hasValidIndex(file.toString()));
+
+            // el último offset no es el fin del archivo
+            Files.write(idx, good);
+            try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.allocate(8).putLong(0, 12), good.length - 8);
+            }
+            assertFalse("offsets", CsvReader.hasValidIndex(file.toString()));
+
+            // cortado a la mitad
+            Files.write(idx, Arrays.copyOf(good, good.length / 2));
+            assertFalse("cortado", CsvReader.hasValidIndex(file.toString()));
+
+            // la versión anterior (con tipos) tampoco se usa
+            Files.write(idx, good);
+            try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.allocate(8).putLong(0, 0x4353564944583031L), 0);
+            }
+            assertFalse("versión 01", CsvReader.hasValidIndex(file.toString()));
+
+            Sheet lazy = CsvReader.openLazy(file.toString(), null);
+            assertEquals(5001, lazy.getRowCount());
+            assertTrue("se reescribió", CsvReader.hasValidIndex(file.toString()));
+        } finally {
+            Files.deleteIfExists(idx);
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas de la hoja en memoria: filas que agregan columnas y operaciones
+ * de columnas sobre hojas con tipos ya inferidos.
+ */
+public class SheetTest extends TestCase {
+
+    public void testLongerRowThenAddColumn() throws Exception {
+        Path file = Files.createTempFile("hoja", ".csv");
+        try {
+            Files.write(file, "id,monto\n1,10\n2,20\n".getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.readCsv(file.toString());
+            assertEquals(ColumnType.INTEGER, sheet.getColumnType(1));
+
+            // una fila con más campos (por ejemplo desde --follow)
+            sheet.addRow(new String[]{"3", "30", "extra", "otra"});
+            assertEquals("columnas", 4, sheet.getColCount());
+            assertEquals("columna nueva de texto", ColumnType.TEXT, sheet.getColumnType(3));
+
+            sheet.addColumn();
+            sheet.addColumnAt(4);
+            sheet.duplicateColumnAt(1);
+            assertEquals("columnas", 7, sheet.getColCount());
+            assertEquals("tipo de la copia", ColumnType.INTEGER, sheet.getColumnType(2));
+            assertEquals("extra", sheet.getCell(3, 3).getValue());
+            assertEquals("otra", sheet.getCell(3, 4).getValue());
+            assertEquals("30", sheet.getCell(3, 2).getValue());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Pruebas de la hoja sin copia (--zero-copy): cada celda se decodifica
+ * desde el archivo mapeado y debe quedar igual que con readCsv.
+ */
+public class SliceRowListTest extends TestCase {
+
+    private static final String CSV =
+            "id,nombre,nota\n"
+          + "1,\"Doe, John\",\"dice \"\"hola\"\"\"\n"
+          + "2,\"linea uno\nlinea dos\",x\r\n"
+          + "3,\"\"\"\",\"\"\n"
+          + "4,ñandú,\"\"\"al principio\"\n"
+          + "5,corta\n"
+          + "6,,\"fin \"\"\"";
+
+    private static void sameCells(Sheet expected, Sheet sheet) {
+        assertEquals("filas", expected.getRowCount(), sheet.getRowCount());
+        assertEquals("columnas", expected.getColCount(), sheet.getColCount());
+        for (int r = 0; r < expected.getRowCount(); r++) {
+            for (int c = 0; c < expected.getColCount(); c++) {
+                assertEquals("celda " + r + "," + c, expected.getCell(r, c).getValue(), sheet.getCell(r, c).getValue());
+            }
+        }
+    }
+
+    private void check(String csv, Charset charset) throws Exception {
+        Path file = Files.createTempFile("sin-copia", ".csv");
+        try {
+            Files.write(file, csv.getBytes(charset));
+            sameCells(CsvReader.readCsv(file.toString()), CsvReader.openZeroCopy(file.toString(), null));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testEscapedQuotes() throws Exception {
+        Path file = Files.createTempFile("sin-copia", ".csv");
+        try {
+            Files.write(file, CSV.getBytes(StandardCharsets.UTF_8));
+            Sheet sheet = CsvReader.openZeroCopy(file.toString(), null);
+            assertEquals("dice \"hola\"", sheet.getCell(1, 2).getValue());
+            assertEquals("linea uno\nlinea dos", sheet.getCell(2, 1).getValue());
+            assertEquals("\"", sheet.getCell(3, 1).getValue());
+            assertEquals("", sheet.getCell(3, 2).getValue());
+            assertEquals("\"al principio", sheet.getCell(4, 2).getValue());
+            assertEquals("fila corta", "", sheet.getCell(5, 2).getValue());
+            assertEquals("fin \"", sheet.getCell(6, 2).getValue());
+            sameCells(CsvReader.readCsv(file.toString()), sheet);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSemicolonLatin1() throws Exception {
+        check("nombre;ciudad\nJosé;\"Bogotá; \"\"centro\"\"\"\nMaría;Cusco\n", StandardCharsets.ISO_8859_1);
+    }
+
+    public void testManyRows() throws Exception {
+        StringBuilder sb = new StringBuilder("a,b,c\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i).append(",\"t").append(i).append(" \"\"").append(i % 13).append("\"\"\",")
+              .append(i % 3 == 0 ? "" : "z").append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+        check(sb.toString(), StandardCharsets.UTF_8);
+    }
+}
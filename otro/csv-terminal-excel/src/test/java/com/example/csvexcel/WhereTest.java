@@ -0,0 +1,100 @@
+package com.example.csvexcel;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Pruebas de --where: la condición que se prueba al leer (sobre los bytes
+ * del registro) deja las mismas filas que filtrar la hoja completa.
+ */
+public class WhereTest extends TestCase {
+
+    private static final String[] VALUES = {"Peru", "peru", "PERU", "PERÚ", "Perú", "Chile", "ı", "I", "i",
+            "K", "k", "K", "", "30", "31", "30.0", "30.5", "-0", "007", "1e3", " 5", "abc", "5.", "-", ".5",
+            "-.5", "123456789012345678", "0.1", "0.30000000000000004", "29.999999999999999"};
+    private static final String[] CONDITIONS = {"==Peru", "!=Peru", "==i", "==k", "==PERÚ", ">30", "<30",
+            ">=30", "<=30.5", "==30", "!=30", "==0", "==-0", ">-1", "==0.1", "<1000", ">5", "==", "!="};
+
+    // testBytes decide igual que test siempre que decide
+    private static void checkBytes(String condition, String value) {
+        Condition cond = Condition.parse(0, condition);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int result = cond.testBytes(ByteBuffer.wrap(bytes), 0, bytes.length);
+        if (result >= 0) {
+            assertEquals(condition + " [" + value + "]", cond.test(value), result == 1);
+        }
+    }
+
+    public void testBytesSameAsText() {
+        for (String c : CONDITIONS) {
+            for (String v : VALUES) checkBytes(c, v);
+        }
+        Random random = new Random(2);
+        String chars = "0123456789.-eE +aZ";
+        for (int k = 0; k < 200_000; k++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(8);
+            for (int j = 0; j < len; j++) sb.append(chars.charAt(random.nextInt(chars.length())));
+            checkBytes(CONDITIONS[random.nextInt(CONDITIONS.length)], sb.toString());
+        }
+    }
+
+    private static String csv() {
+        Random random = new Random(3);
+        StringBuilder sb = new StringBuilder("id,pais,edad,nota\n");
+        for (int i = 0; i < 3000; i++) {
+            String pais = VALUES[random.nextInt(12)];
+            String edad = random.nextInt(10) == 0 ? VALUES[12 + random.nextInt(VALUES.length - 12)]
+                    : String.valueOf(random.nextInt(80));
+            if (i % 50 == 7) {
+                sb.append(i).append(',').append(pais).append('\n'); // registro corto
+            } else {
+                sb.append(i).append(',').append(pais).append(',').append(edad)
+                  .append(",\"n,").append(i).append("\"\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    // Las filas de 'where' (encabezado y filtradas) contra la hoja completa filtrada
+    private static void sameRows(String spec, Sheet full, Sheet where) {
+        int header = full.getRowCount() > 0 && full.getCell(0, 0).getValue().equals("id") ? 0 : 1;
+        assertEquals(spec + " filas", full.getRowCount() + header, where.getRowCount());
+        assertEquals(spec + " total", full.getTotalOriginalRows(), where.getTotalOriginalRows());
+        for (int r = 0; r < full.getRowCount(); r++) {
+            for (int c = 0; c < full.getColCount(); c++) {
+                assertEquals(spec + " celda " + r + "," + c, full.getCell(r, c).getValue(),
+                        where.getCell(r + header, c).getValue());
+            }
+        }
+    }
+
+    public void testSameAsFilterByColumn() throws Exception {
+        Path file = Files.createTempFile("where", ".csv");
+        try {
+            Files.write(file, csv().getBytes(StandardCharsets.UTF_8));
+            String name = file.toString();
+            String[] specs = {"C>30", "edad==30", "pais==peru", "B!=Peru", "pais==PERÚ", "C<=30.5",
+                    "nota==", "nota!=", "edad<1000", "D!=x"};
+            for (String spec : specs) {
+                int op = 0;
+                while ("<>=!".indexOf(spec.charAt(op)) < 0) op++;
+                RowSelection selection = CsvReader.resolveSelection(name, null, spec);
+                Sheet full = CsvReader.readCsv(name);
+                full.filterByColumn(selection.getWhere().getColumn(), spec.substring(op));
+
+                sameRows(spec, full, CsvReader.readCsv(name, selection, null));
+                // en paralelo, con bloques chicos
+                Sheet parallel = ParallelCsvParser.parse(file, Dialect.sniff(file), 4096, selection, null);
+                sameRows(spec + " (paralelo)", full, parallel);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}